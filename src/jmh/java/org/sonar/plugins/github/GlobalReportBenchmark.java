@@ -0,0 +1,87 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.batch.postjob.issue.PostJobIssue;
+import org.sonar.api.config.internal.MapSettings;
+
+/**
+ * Processing of all the issues of a pull request by the global report, then rendering of the global comment.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GlobalReportBenchmark {
+
+  @Param({"10", "1000", "100000", "1000000"})
+  public int issueCount;
+
+  @Param({"10", "1000"})
+  public int maxGlobalIssues;
+
+  private MarkDownUtils markDownUtils;
+  private List<PostJobIssue> sortedIssues;
+  private List<PostJobIssue> unsortedIssues;
+
+  @Setup
+  public void setup() {
+    MapSettings settings = new MapSettings();
+    settings.setProperty("sonar.host.url", "http://myserver");
+    markDownUtils = new MarkDownUtils(settings);
+    unsortedIssues = SyntheticData.issues(issueCount, Math.max(1, issueCount / 20), 80, 42);
+    sortedIssues = IssueIndex.of(unsortedIssues).issues(f -> true);
+  }
+
+  @Benchmark
+  public String sortedIssuesInArrivalOrder() {
+    GlobalReport report = new GlobalReport(markDownUtils, false, maxGlobalIssues, false);
+    for (PostJobIssue issue : sortedIssues) {
+      report.process(issue, null, false);
+    }
+    return report.formatForMarkdown();
+  }
+
+  @Benchmark
+  public String unsortedIssuesWithMostSevereSelection() {
+    GlobalReport report = new GlobalReport(markDownUtils, false, maxGlobalIssues, true);
+    for (PostJobIssue issue : unsortedIssues) {
+      if (issue.isNew()) {
+        report.process(issue, null, false);
+      }
+    }
+    return report.formatForMarkdown();
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.batch.postjob.issue.PostJobIssue;
+
+/**
+ * Sorting and indexing of the issues of an analysis.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IssueSortBenchmark {
+
+  @Param({"10", "1000", "100000", "1000000"})
+  public int issueCount;
+
+  private List<PostJobIssue> issues;
+
+  @Setup
+  public void setup() {
+    issues = SyntheticData.issues(issueCount, Math.max(1, issueCount / 20), 80, 42);
+  }
+
+  @Benchmark
+  public List<PostJobIssue> comparatorSort() {
+    List<PostJobIssue> copy = new ArrayList<>(issues);
+    copy.sort(new IssueComparator());
+    return copy;
+  }
+
+  @Benchmark
+  public List<PostJobIssue> packedKeySort() {
+    List<PostJobIssue> copy = new ArrayList<>(issues);
+    IssueComparator.sort(copy);
+    return copy;
+  }
+
+  @Benchmark
+  public IssueIndex issueIndex() {
+    return IssueIndex.of(issues);
+  }
+}
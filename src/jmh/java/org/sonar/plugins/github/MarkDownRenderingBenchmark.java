@@ -0,0 +1,83 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.batch.rule.Severity;
+import org.sonar.api.config.internal.MapSettings;
+
+/**
+ * Cost of rendering a single issue, inline and in the global comment, and of its parts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarkDownRenderingBenchmark {
+
+  @Param({"BLOCKER", "INFO"})
+  public Severity severity;
+
+  private MarkDownUtils markDownUtils;
+  private URL url;
+
+  @Setup
+  public void setup() throws MalformedURLException {
+    MapSettings settings = new MapSettings();
+    settings.setProperty("sonar.host.url", "http://myserver");
+    markDownUtils = new MarkDownUtils(settings);
+    url = new URL("https://github.com/SonarSource/sonar-github/blob/abc123/src/main/java/org/sonar/plugins/github/Foo.java#L42");
+  }
+
+  @Benchmark
+  public String inlineIssue() {
+    return markDownUtils.inlineIssue(severity, "Remove this unused private field.", "squid:S1068");
+  }
+
+  @Benchmark
+  public String globalIssue() {
+    return markDownUtils.globalIssue("Remove this unused private field.", "squid:S1068", url, "foo:src/main/java/Foo.java");
+  }
+
+  @Benchmark
+  public String imageLinkReference() {
+    return SeverityMarkup.of(severity).imageLinkReference();
+  }
+
+  @Benchmark
+  public String location() {
+    return MarkDownUtils.getLocation(url);
+  }
+}
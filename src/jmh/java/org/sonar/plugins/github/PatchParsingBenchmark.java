@@ -0,0 +1,77 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing of a file patch into its line to position index, from a small change to a huge generated file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatchParsingBenchmark {
+
+  @Param({"1", "10", "1000", "20000"})
+  public int hunks;
+
+  @Param({"10", "50"})
+  public int linesPerHunk;
+
+  @Param({"false", "true"})
+  public boolean ignoreUnchangedLines;
+
+  private String patch;
+  private PatchPositionIndex index;
+
+  @Setup
+  public void setup() {
+    patch = SyntheticData.patch(hunks, linesPerHunk, 42);
+    index = PullRequestFacade.processPatch(patch, ignoreUnchangedLines);
+  }
+
+  @Benchmark
+  public PatchPositionIndex processPatch() {
+    return PullRequestFacade.processPatch(patch, ignoreUnchangedLines);
+  }
+
+  @Benchmark
+  public int lookup() {
+    int found = 0;
+    for (int line = 0; line < 1000; line++) {
+      found += index.position(line * 37);
+    }
+    return found;
+  }
+}
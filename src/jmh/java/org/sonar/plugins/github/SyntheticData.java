@@ -0,0 +1,151 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import javax.annotation.CheckForNull;
+import org.sonar.api.batch.fs.InputComponent;
+import org.sonar.api.batch.postjob.issue.PostJobIssue;
+import org.sonar.api.batch.rule.Severity;
+import org.sonar.api.rule.RuleKey;
+
+/**
+ * Reproducible issues and patches for benchmarks.
+ */
+final class SyntheticData {
+
+  private static final Severity[] SEVERITIES = Severity.values();
+
+  private SyntheticData() {
+    // only static methods
+  }
+
+  /**
+   * @param count number of issues
+   * @param files number of distinct components the issues are spread on
+   * @param rules number of distinct rules
+   */
+  static List<PostJobIssue> issues(int count, int files, int rules, long seed) {
+    Random random = new Random(seed);
+    List<PostJobIssue> issues = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      int file = random.nextInt(files);
+      String componentKey = "project:src/main/java/org/example/module" + (file % 17) + "/File" + file + ".java";
+      Integer line = random.nextInt(10) == 0 ? null : (1 + random.nextInt(5_000));
+      RuleKey ruleKey = RuleKey.of("squid", "S" + (1000 + random.nextInt(rules)));
+      issues.add(new SyntheticIssue("issue" + i, ruleKey, componentKey, line, "Message of issue " + i,
+        SEVERITIES[random.nextInt(SEVERITIES.length)], random.nextInt(4) != 0));
+    }
+    return issues;
+  }
+
+  /**
+   * @param hunks number of hunks
+   * @param linesPerHunk lines of each hunk, roughly a third of them added and a sixth removed
+   */
+  static String patch(int hunks, int linesPerHunk, long seed) {
+    Random random = new Random(seed);
+    StringBuilder patch = new StringBuilder(hunks * linesPerHunk * 40);
+    int line = 1;
+    for (int h = 0; h < hunks; h++) {
+      line += 1 + random.nextInt(50);
+      patch.append("@@ -").append(line).append(',').append(linesPerHunk).append(" +").append(line).append(',').append(linesPerHunk)
+        .append(" @@ public class Foo {\n");
+      for (int l = 0; l < linesPerHunk; l++) {
+        int kind = random.nextInt(6);
+        if (kind < 2) {
+          patch.append('+');
+          line++;
+        } else if (kind == 2) {
+          patch.append('-');
+        } else {
+          patch.append(' ');
+          line++;
+        }
+        patch.append("    private final String field").append(l).append(" = \"value\";\n");
+      }
+    }
+    return patch.toString();
+  }
+
+  private static final class SyntheticIssue implements PostJobIssue {
+    private final String key;
+    private final RuleKey ruleKey;
+    private final String componentKey;
+    private final Integer line;
+    private final String message;
+    private final Severity severity;
+    private final boolean isNew;
+
+    private SyntheticIssue(String key, RuleKey ruleKey, String componentKey, @CheckForNull Integer line, String message, Severity severity, boolean isNew) {
+      this.key = key;
+      this.ruleKey = ruleKey;
+      this.componentKey = componentKey;
+      this.line = line;
+      this.message = message;
+      this.severity = severity;
+      this.isNew = isNew;
+    }
+
+    @Override
+    public String key() {
+      return key;
+    }
+
+    @Override
+    public RuleKey ruleKey() {
+      return ruleKey;
+    }
+
+    @Override
+    public String componentKey() {
+      return componentKey;
+    }
+
+    @CheckForNull
+    @Override
+    public InputComponent inputComponent() {
+      return null;
+    }
+
+    @CheckForNull
+    @Override
+    public Integer line() {
+      return line;
+    }
+
+    @Override
+    public String message() {
+      return message;
+    }
+
+    @Override
+    public Severity severity() {
+      return severity;
+    }
+
+    @Override
+    public boolean isNew() {
+      return isNew;
+    }
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+import java.io.File;
+import java.net.Proxy;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.CheckForNull;
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.JavaNetAuthenticator;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.kohsuke.github.HttpConnector;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.utils.MessageException;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Build the HTTP connector used by the GitHub client, according to {@link GitHubPlugin#GITHUB_HTTP_CLIENT}:
+ * <ul>
+ *   <li>{@code urlconnection}: JDK HttpURLConnection, one request at a time per connection</li>
+ *   <li>{@code okhttp}: OkHttp with a tunable connection pool and HTTP/2 multiplexing when the server supports it</li>
+ * </ul>
+ * Both apply the configured timeouts and proxy. The optional on-disk response cache of
+ * {@link GitHubPlugin#GITHUB_CACHE_DIRECTORY} requires OkHttp, so it is used as soon as the cache is enabled.
+ */
+@ScannerSide
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class GitHubConnectorProvider {
+
+  private static final Logger LOG = Loggers.get(GitHubConnectorProvider.class);
+
+  static final String URLCONNECTION = "urlconnection";
+  static final String OKHTTP = "okhttp";
+  private static final long KEEP_ALIVE_MINUTES = 5;
+
+  private final GitHubPluginConfiguration config;
+  private HttpConnector connector;
+
+  public GitHubConnectorProvider(GitHubPluginConfiguration config) {
+    this.config = config;
+  }
+
+  public synchronized HttpConnector connector() {
+    if (connector == null) {
+      connector = createConnector();
+    }
+    return connector;
+  }
+
+  private HttpConnector createConnector() {
+    Proxy proxy = config.isProxyConnectionEnabled() ? config.getHttpProxy() : null;
+    File cacheDirectory = config.cacheDirectory();
+    String client = config.httpClient().toLowerCase(Locale.ENGLISH);
+    if (OKHTTP.equals(client) || cacheDirectory != null) {
+      if (!OKHTTP.equals(client)) {
+        LOG.info("GitHub response cache requires the '{}' HTTP client, it is used instead of '{}'", OKHTTP, client);
+      }
+      return new OkHttpConnector(createOkHttpClient(proxy, cacheDirectory));
+    }
+    if (URLCONNECTION.equals(client)) {
+      return new UrlConnectionConnector(proxy, config.connectTimeoutMs(), config.readTimeoutMs());
+    }
+    throw MessageException.of("Unsupported value '" + config.httpClient() + "' for property '" + GitHubPlugin.GITHUB_HTTP_CLIENT
+      + "'. Supported values are '" + URLCONNECTION + "' and '" + OKHTTP + "'.");
+  }
+
+  private OkHttpClient createOkHttpClient(@CheckForNull Proxy proxy, @CheckForNull File cacheDirectory) {
+    OkHttpClient.Builder builder = new OkHttpClient.Builder()
+      .connectTimeout(config.connectTimeoutMs(), TimeUnit.MILLISECONDS)
+      .readTimeout(config.readTimeoutMs(), TimeUnit.MILLISECONDS)
+      .connectionPool(new ConnectionPool(config.connectionPoolSize(), KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+      // HTTP/2 is negotiated with ALPN, HTTP/1.1 remains the fallback
+      .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+    if (proxy != null) {
+      builder.proxy(proxy).proxyAuthenticator(new JavaNetAuthenticator());
+    }
+    if (cacheDirectory != null) {
+      // A single Cache instance may use a given directory, hence a single connector per analysis
+      builder.cache(new Cache(cacheDirectory, config.cacheMaxSizeBytes()));
+      LOG.info("GitHub responses are cached in {}", cacheDirectory);
+    }
+    return builder.build();
+  }
+}
@@ -83,7 +83,111 @@ import org.sonar.api.PropertyType;
     description = "Use a PR review to contain the comments - so github only sends a single email per analysis",
     project = true,
     global = true,
-    type = PropertyType.BOOLEAN)
+    type = PropertyType.BOOLEAN),
+  @Property(
+    key = GitHubPlugin.GITHUB_PUBLISH_THREADS,
+    defaultValue = "" + GitHubPluginConfiguration.DEFAULT_PUBLISH_THREADS,
+    name = "Pull requests published concurrently",
+    description = "Maximum number of pull requests updated at the same time when several pull request numbers are provided",
+    project = true,
+    global = true,
+    type = PropertyType.INTEGER),
+  @Property(
+    key = GitHubPlugin.GITHUB_REQUEST_THREADS,
+    defaultValue = "" + GitHubPluginConfiguration.DEFAULT_REQUEST_THREADS,
+    name = "Concurrent GitHub requests per pull request",
+    description = "Number of workers used to create, update and delete inline comments of a pull request",
+    project = true,
+    global = true,
+    type = PropertyType.INTEGER),
+  @Property(
+    key = GitHubPlugin.GITHUB_MAX_REQUESTS_IN_FLIGHT,
+    defaultValue = "" + GitHubPluginConfiguration.DEFAULT_MAX_REQUESTS_IN_FLIGHT,
+    name = "Maximum GitHub requests in flight",
+    description = "Maximum number of inline comment requests queued or running at the same time, for all pull requests of an analysis",
+    project = true,
+    global = true,
+    type = PropertyType.INTEGER),
+  @Property(
+    key = GitHubPlugin.GITHUB_MAX_REQUESTS_PER_SECOND,
+    defaultValue = "" + GitHubPluginConfiguration.DEFAULT_MAX_REQUESTS_PER_SECOND,
+    name = "Maximum GitHub requests per second",
+    description = "Upper bound of the request rate for all pull requests of an analysis. The rate is lowered automatically when the "
+      + "GitHub rate limit is about to be exhausted. Use 0 to only rely on GitHub rate limit headers.",
+    project = true,
+    global = true,
+    type = PropertyType.INTEGER),
+  @Property(
+    key = GitHubPlugin.GITHUB_CACHE_DIRECTORY,
+    name = "GitHub response cache directory",
+    description = "Local directory where GitHub API responses are cached between analyses. Unchanged resources are then revalidated "
+      + "with conditional requests, which don't count against the rate limit. Leave empty to disable the cache.",
+    project = true,
+    global = true),
+  @Property(
+    key = GitHubPlugin.GITHUB_CACHE_MAX_SIZE,
+    defaultValue = "" + GitHubPluginConfiguration.DEFAULT_CACHE_MAX_SIZE_MB,
+    name = "GitHub response cache size",
+    description = "Maximum size in MB of the GitHub response cache. Least recently used responses are evicted first.",
+    project = true,
+    global = true,
+    type = PropertyType.INTEGER),
+  @Property(
+    key = GitHubPlugin.GITHUB_HTTP_CLIENT,
+    defaultValue = GitHubConnectorProvider.URLCONNECTION,
+    name = "HTTP client",
+    description = "HTTP client used to call GitHub: '" + GitHubConnectorProvider.URLCONNECTION + "' (JDK) or '" + GitHubConnectorProvider.OKHTTP
+      + "' (connection pool and HTTP/2 multiplexing). The response cache always uses '" + GitHubConnectorProvider.OKHTTP + "'.",
+    project = true,
+    global = true),
+  @Property(
+    key = GitHubPlugin.GITHUB_CONNECT_TIMEOUT,
+    defaultValue = "" + GitHubPluginConfiguration.DEFAULT_CONNECT_TIMEOUT_MS,
+    name = "GitHub connect timeout",
+    description = "Timeout in milliseconds to establish a connection to GitHub",
+    project = true,
+    global = true,
+    type = PropertyType.INTEGER),
+  @Property(
+    key = GitHubPlugin.GITHUB_READ_TIMEOUT,
+    defaultValue = "" + GitHubPluginConfiguration.DEFAULT_READ_TIMEOUT_MS,
+    name = "GitHub read timeout",
+    description = "Timeout in milliseconds to wait for data from GitHub",
+    project = true,
+    global = true,
+    type = PropertyType.INTEGER),
+  @Property(
+    key = GitHubPlugin.GITHUB_CONNECTION_POOL_SIZE,
+    defaultValue = "" + GitHubPluginConfiguration.DEFAULT_CONNECTION_POOL_SIZE,
+    name = "GitHub connection pool size",
+    description = "Maximum number of idle connections kept alive by the '" + GitHubConnectorProvider.OKHTTP + "' HTTP client",
+    project = true,
+    global = true,
+    type = PropertyType.INTEGER),
+  @Property(
+    key = GitHubPlugin.GITHUB_PARALLEL_ISSUE_PROCESSING,
+    defaultValue = "false",
+    name = "Process issues in parallel",
+    description = "Filter and format the issues of each pull request on several threads. Useful for analyses reporting a very large number of issues.",
+    project = true,
+    global = true,
+    type = PropertyType.BOOLEAN),
+  @Property(
+    key = GitHubPlugin.GITHUB_STATE_DIRECTORY,
+    name = "Published comments state directory",
+    description = "Local directory where the comments published on each pull request are recorded. When the same head commit is analyzed "
+      + "again and the pull request comment counts didn't change, previous comments are not listed again. Leave empty to disable.",
+    project = true,
+    global = true),
+  @Property(
+    key = GitHubPlugin.GITHUB_PAGE_SIZE,
+    defaultValue = "" + GitHubPluginConfiguration.MAX_PAGE_SIZE,
+    name = "GitHub listing page size",
+    description = "Number of elements requested per page when listing pull request files, comments, reviews and commit statuses. "
+      + "GitHub doesn't return more than " + GitHubPluginConfiguration.MAX_PAGE_SIZE + " elements per page.",
+    project = true,
+    global = true,
+    type = PropertyType.INTEGER)
 })
 public class GitHubPlugin implements Plugin {
 
@@ -95,6 +199,19 @@ public class GitHubPlugin implements Plugin {
   public static final String GITHUB_IGNORE_UNCHANGED_LINES = "sonar.github.ignoreUnchangedLines";
   public static final String GITHUB_ALWAYS_INCLUDE_UNUSED = "sonar.github.alwaysIncludeUnused";
   public static final String GITHUB_USE_REVIEW = "sonar.github.useReview";
+  public static final String GITHUB_PUBLISH_THREADS = "sonar.github.publishThreads";
+  public static final String GITHUB_REQUEST_THREADS = "sonar.github.requestThreads";
+  public static final String GITHUB_MAX_REQUESTS_IN_FLIGHT = "sonar.github.maxRequestsInFlight";
+  public static final String GITHUB_MAX_REQUESTS_PER_SECOND = "sonar.github.maxRequestsPerSecond";
+  public static final String GITHUB_CACHE_DIRECTORY = "sonar.github.cacheDirectory";
+  public static final String GITHUB_CACHE_MAX_SIZE = "sonar.github.cacheMaxSize";
+  public static final String GITHUB_HTTP_CLIENT = "sonar.github.httpClient";
+  public static final String GITHUB_CONNECT_TIMEOUT = "sonar.github.connectTimeout";
+  public static final String GITHUB_READ_TIMEOUT = "sonar.github.readTimeout";
+  public static final String GITHUB_CONNECTION_POOL_SIZE = "sonar.github.connectionPoolSize";
+  public static final String GITHUB_PARALLEL_ISSUE_PROCESSING = "sonar.github.parallelIssueProcessing";
+  public static final String GITHUB_STATE_DIRECTORY = "sonar.github.stateDirectory";
+  public static final String GITHUB_PAGE_SIZE = "sonar.github.pageSize";
 
   @Override
   public void define(Context context) {
@@ -103,6 +220,9 @@ public class GitHubPlugin implements Plugin {
       GitHubPluginConfiguration.class,
       PullRequestProjectBuilder.class,
       PullRequestFacades.class,
+      GitHubRequestScheduler.class,
+      GitHubConnectorProvider.class,
+      GitHubSession.class,
       MarkDownUtils.class);
   }
 
@@ -19,6 +19,7 @@
  */
 package org.sonar.plugins.github;
 
+import java.io.File;
 import java.net.Authenticator;
 import java.net.PasswordAuthentication;
 import java.net.Proxy;
@@ -45,6 +46,15 @@ import static org.apache.commons.lang.StringUtils.isNotBlank;
 public class GitHubPluginConfiguration {
 
   public static final int MAX_GLOBAL_ISSUES = 10;
+  public static final int DEFAULT_PUBLISH_THREADS = 4;
+  public static final int DEFAULT_REQUEST_THREADS = 4;
+  public static final int DEFAULT_MAX_REQUESTS_IN_FLIGHT = 32;
+  public static final int DEFAULT_MAX_REQUESTS_PER_SECOND = 10;
+  public static final int DEFAULT_CACHE_MAX_SIZE_MB = 50;
+  public static final int DEFAULT_CONNECT_TIMEOUT_MS = 10_000;
+  public static final int DEFAULT_READ_TIMEOUT_MS = 60_000;
+  public static final int DEFAULT_CONNECTION_POOL_SIZE = 5;
+  public static final int MAX_PAGE_SIZE = 100;
   private static final Logger LOG = Loggers.get(GitHubPluginConfiguration.class);
   public static final String HTTP_PROXY_HOSTNAME = "http.proxyHost";
   public static final String HTTPS_PROXY_HOSTNAME = "https.proxyHost";
@@ -151,6 +161,86 @@ public class GitHubPluginConfiguration {
     return settings.getBoolean(GitHubPlugin.GITHUB_USE_REVIEW);
   }
 
+  public boolean parallelIssueProcessing() {
+    return settings.getBoolean(GitHubPlugin.GITHUB_PARALLEL_ISSUE_PROCESSING);
+  }
+
+  /**
+   * @return Maximum number of pull requests published concurrently, at least 1.
+   */
+  public int publishThreads() {
+    return positiveIntOrDefault(GitHubPlugin.GITHUB_PUBLISH_THREADS, DEFAULT_PUBLISH_THREADS);
+  }
+
+  /**
+   * @return Number of workers sending inline comment requests for a single pull request, at least 1.
+   */
+  public int requestThreads() {
+    return positiveIntOrDefault(GitHubPlugin.GITHUB_REQUEST_THREADS, DEFAULT_REQUEST_THREADS);
+  }
+
+  /**
+   * @return Maximum number of inline comment requests queued or running for all pull requests, at least 1.
+   */
+  public int maxRequestsInFlight() {
+    return positiveIntOrDefault(GitHubPlugin.GITHUB_MAX_REQUESTS_IN_FLIGHT, DEFAULT_MAX_REQUESTS_IN_FLIGHT);
+  }
+
+  /**
+   * @return Maximum GitHub request rate, 0 or less to disable client side pacing.
+   */
+  public int maxRequestsPerSecond() {
+    if (settings.hasKey(GitHubPlugin.GITHUB_MAX_REQUESTS_PER_SECOND)) {
+      return settings.getInt(GitHubPlugin.GITHUB_MAX_REQUESTS_PER_SECOND);
+    }
+    return DEFAULT_MAX_REQUESTS_PER_SECOND;
+  }
+
+  @CheckForNull
+  public File cacheDirectory() {
+    String path = settings.getString(GitHubPlugin.GITHUB_CACHE_DIRECTORY);
+    return isNotBlank(path) ? new File(path) : null;
+  }
+
+  @CheckForNull
+  public File stateDirectory() {
+    String path = settings.getString(GitHubPlugin.GITHUB_STATE_DIRECTORY);
+    return isNotBlank(path) ? new File(path) : null;
+  }
+
+  public long cacheMaxSizeBytes() {
+    return positiveIntOrDefault(GitHubPlugin.GITHUB_CACHE_MAX_SIZE, DEFAULT_CACHE_MAX_SIZE_MB) * 1024L * 1024L;
+  }
+
+  public String httpClient() {
+    String client = settings.getString(GitHubPlugin.GITHUB_HTTP_CLIENT);
+    return isNotBlank(client) ? client.trim() : GitHubConnectorProvider.URLCONNECTION;
+  }
+
+  public int connectTimeoutMs() {
+    return positiveIntOrDefault(GitHubPlugin.GITHUB_CONNECT_TIMEOUT, DEFAULT_CONNECT_TIMEOUT_MS);
+  }
+
+  public int readTimeoutMs() {
+    return positiveIntOrDefault(GitHubPlugin.GITHUB_READ_TIMEOUT, DEFAULT_READ_TIMEOUT_MS);
+  }
+
+  public int connectionPoolSize() {
+    return positiveIntOrDefault(GitHubPlugin.GITHUB_CONNECTION_POOL_SIZE, DEFAULT_CONNECTION_POOL_SIZE);
+  }
+
+  /**
+   * @return Number of elements requested per page by listings, between 1 and the GitHub maximum.
+   */
+  public int pageSize() {
+    return Math.min(positiveIntOrDefault(GitHubPlugin.GITHUB_PAGE_SIZE, MAX_PAGE_SIZE), MAX_PAGE_SIZE);
+  }
+
+  private int positiveIntOrDefault(String key, int defaultValue) {
+    int value = settings.getInt(key);
+    return value > 0 ? value : defaultValue;
+  }
+
   /**
    * Checks if a proxy was passed with command line parameters or configured in the system.
    * If only an HTTP proxy was configured then it's properties are copied to the HTTPS proxy (like SonarQube configuration)
@@ -0,0 +1,165 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Run independent GitHub requests on a bounded worker pool. At most {@code maxInFlight} requests are queued or
+ * running at the same time: {@link #submit(String, Request)} blocks the caller until a slot is released.
+ * Failures are collected in submission order, so that reporting stays deterministic.
+ */
+class GitHubRequestDispatcher implements AutoCloseable {
+
+  @FunctionalInterface
+  interface Request {
+    void execute() throws Exception;
+  }
+
+  static class Failure {
+    private final String description;
+    private final Exception cause;
+
+    private Failure(String description, Exception cause) {
+      this.description = description;
+      this.cause = cause;
+    }
+
+    String description() {
+      return description;
+    }
+
+    Exception cause() {
+      return cause;
+    }
+  }
+
+  static class Result {
+    private final int submitted;
+    private final List<Failure> failures;
+
+    private Result(int submitted, List<Failure> failures) {
+      this.submitted = submitted;
+      this.failures = Collections.unmodifiableList(failures);
+    }
+
+    int succeeded() {
+      return submitted - failures.size();
+    }
+
+    List<Failure> failures() {
+      return failures;
+    }
+
+    /**
+     * Throw the first failure (in submission order), with the following ones attached as suppressed exceptions.
+     */
+    void rethrowFailures() {
+      if (failures.isEmpty()) {
+        return;
+      }
+      Exception first = failures.get(0).cause();
+      RuntimeException toThrow = first instanceof RuntimeException ? (RuntimeException) first
+        : new IllegalStateException("Unable to perform " + failures.get(0).description(), first);
+      for (Failure other : failures.subList(1, failures.size())) {
+        toThrow.addSuppressed(other.cause());
+      }
+      throw toThrow;
+    }
+  }
+
+  private final ExecutorService executor;
+  private final Semaphore inFlight;
+  private final List<String> descriptions = new ArrayList<>();
+  private final List<Future<?>> futures = new ArrayList<>();
+
+  GitHubRequestDispatcher(String name, int threads, int maxInFlight) {
+    // No need for more workers than requests allowed in flight
+    this(name, Math.min(threads, maxInFlight), new Semaphore(Math.max(1, maxInFlight)));
+  }
+
+  /**
+   * @param inFlight permits shared with other dispatchers, one per request queued or running
+   */
+  GitHubRequestDispatcher(String name, int threads, Semaphore inFlight) {
+    this.executor = Executors.newFixedThreadPool(Math.max(1, threads), new NamedDaemonThreadFactory(name));
+    this.inFlight = inFlight;
+  }
+
+  void submit(String description, Request request) {
+    try {
+      inFlight.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while submitting " + description, e);
+    }
+    try {
+      futures.add(executor.submit(() -> {
+        try {
+          request.execute();
+          return null;
+        } finally {
+          inFlight.release();
+        }
+      }));
+      descriptions.add(description);
+    } catch (RuntimeException e) {
+      inFlight.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Wait for all submitted requests. The dispatcher can be reused afterwards.
+   */
+  Result awaitCompletion() {
+    List<Failure> failures = new ArrayList<>();
+    int submitted = futures.size();
+    for (int i = 0; i < submitted; i++) {
+      try {
+        futures.get(i).get();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        failures.add(new Failure(descriptions.get(i), (Exception) cause));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for GitHub requests to complete", e);
+      }
+    }
+    futures.clear();
+    descriptions.clear();
+    return new Result(submitted, failures);
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+}
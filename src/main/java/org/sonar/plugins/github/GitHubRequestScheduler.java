@@ -0,0 +1,460 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.kohsuke.github.AbuseLimitHandler;
+import org.kohsuke.github.GHRateLimit;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.HttpException;
+import org.kohsuke.github.PagedIterable;
+import org.kohsuke.github.PagedIterator;
+import org.kohsuke.github.RateLimitHandler;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Pace all GitHub requests of the analysis, whatever the pull request they target, since they share the same token
+ * and so the same rate limits.
+ * <ul>
+ *   <li>a token bucket limits the request rate to {@link GitHubPlugin#GITHUB_MAX_REQUESTS_PER_SECOND}</li>
+ *   <li>the rate is only lowered when the X-RateLimit-Remaining budget runs low, so that it lasts until X-RateLimit-Reset</li>
+ *   <li>all requests are paused when GitHub asks to: for as long as its Retry-After or X-RateLimit-Reset headers tell,
+ *   with an exponential backoff when a 403/429 rate limit response has none</li>
+ *   <li>a rate limited write is only sent again when these headers prove that GitHub rejected it</li>
+ *   <li>at most {@link GitHubPlugin#GITHUB_MAX_REQUESTS_IN_FLIGHT} concurrent writes are queued or running, whatever the
+ *   number of pull requests published concurrently</li>
+ * </ul>
+ */
+@ScannerSide
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class GitHubRequestScheduler {
+
+  private static final Logger LOG = Loggers.get(GitHubRequestScheduler.class);
+
+  static final int MAX_ATTEMPTS = 4;
+  private static final String RETRY_AFTER = "Retry-After";
+  private static final String RATE_LIMIT_REMAINING = "X-RateLimit-Remaining";
+  private static final String RATE_LIMIT_RESET = "X-RateLimit-Reset";
+  private static final long INITIAL_BACKOFF_MS = 1_000;
+  private static final long MAX_PAUSE_MS = TimeUnit.MINUTES.toMillis(15);
+  // Never let the adaptive rate go below this, GitHub will tell us to pause if really needed
+  private static final double MIN_REQUESTS_PER_SECOND = 0.1;
+  // The remaining budget is considered low below this number of requests, or this fraction of the limit if larger
+  static final int LOW_BUDGET_REQUESTS = 100;
+  private static final double LOW_BUDGET_FRACTION = 0.1;
+
+  @FunctionalInterface
+  interface Call<T> {
+    T execute() throws IOException;
+  }
+
+  @FunctionalInterface
+  interface Action {
+    void execute() throws IOException;
+  }
+
+  /**
+   * Lazy iteration over a GitHub listing, each page being fetched by a scheduled request.
+   */
+  static final class Listing<T> {
+    private final GitHubRequestScheduler scheduler;
+    private final PagedIterator<T> pages;
+    private Iterator<T> page = Collections.emptyIterator();
+
+    private Listing(GitHubRequestScheduler scheduler, PagedIterable<T> iterable) {
+      this.scheduler = scheduler;
+      // No request is sent until the first page is needed
+      this.pages = iterable.iterator();
+    }
+
+    boolean hasNext() throws IOException {
+      while (!page.hasNext()) {
+        List<T> nextPage = scheduler.callIdempotent(this::fetchNextPage);
+        if (nextPage == null) {
+          return false;
+        }
+        page = nextPage.iterator();
+      }
+      return true;
+    }
+
+    T next() throws IOException {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return page.next();
+    }
+
+    @CheckForNull
+    private List<T> fetchNextPage() throws IOException {
+      try {
+        return pages.hasNext() ? pages.nextPage() : null;
+      } catch (RuntimeException | Error e) {
+        // The library wraps I/O failures of page requests, unwrap them so that rate limits are honored
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw e;
+      }
+    }
+  }
+
+  interface Clock {
+    long currentTimeMillis();
+
+    void sleep(long millis) throws InterruptedException;
+  }
+
+  private static final Clock SYSTEM_CLOCK = new Clock() {
+    @Override
+    public long currentTimeMillis() {
+      return System.currentTimeMillis();
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+      Thread.sleep(millis);
+    }
+  };
+
+  private final Clock clock;
+  private final double configuredRate;
+  private final double capacity;
+  private final int maxInFlight;
+  private final Semaphore inFlight;
+
+  private double rate;
+  private double tokens;
+  private long lastRefillMillis;
+  private long pausedUntilMillis;
+  private volatile GitHub tracked;
+
+  public GitHubRequestScheduler(GitHubPluginConfiguration config) {
+    this(config.maxRequestsPerSecond(), config.maxRequestsInFlight(), SYSTEM_CLOCK);
+  }
+
+  GitHubRequestScheduler(int maxRequestsPerSecond, Clock clock) {
+    this(maxRequestsPerSecond, GitHubPluginConfiguration.DEFAULT_MAX_REQUESTS_IN_FLIGHT, clock);
+  }
+
+  GitHubRequestScheduler(int maxRequestsPerSecond, int maxInFlight, Clock clock) {
+    this.clock = clock;
+    this.maxInFlight = Math.max(1, maxInFlight);
+    this.inFlight = new Semaphore(this.maxInFlight);
+    // A non positive rate disables client side pacing, only GitHub feedback is honored
+    this.configuredRate = maxRequestsPerSecond > 0 ? maxRequestsPerSecond : Double.POSITIVE_INFINITY;
+    this.capacity = maxRequestsPerSecond > 0 ? maxRequestsPerSecond : 1;
+    this.rate = configuredRate;
+    this.tokens = capacity;
+    this.lastRefillMillis = clock.currentTimeMillis();
+  }
+
+  /**
+   * Client whose observed rate limit headers drive the adaptive pacing.
+   */
+  void track(GitHub github) {
+    this.tracked = github;
+  }
+
+  /**
+   * Dispatcher of concurrent requests. All dispatchers share the same limit of requests in flight.
+   */
+  GitHubRequestDispatcher dispatcher(String name, int threads) {
+    return new GitHubRequestDispatcher(name, Math.min(threads, maxInFlight), inFlight);
+  }
+
+  <T> T call(Call<T> call) throws IOException {
+    return call(call, false);
+  }
+
+  /**
+   * Iterate over a listing lazily: every page is paced and retried like any other request, and next pages are not
+   * fetched when the iteration stops early.
+   */
+  <T> Listing<T> list(PagedIterable<T> iterable) {
+    return new Listing<>(this, iterable);
+  }
+
+  /**
+   * Same as {@link #call(Call)} for a request that can safely be sent again, like a read.
+   */
+  <T> T callIdempotent(Call<T> call) throws IOException {
+    return call(call, true);
+  }
+
+  void run(Action action) throws IOException {
+    call(() -> {
+      action.execute();
+      return null;
+    }, false);
+  }
+
+  /**
+   * Same as {@link #run(Action)} for a request that can safely be sent again, like a deletion: transient failures
+   * (server errors, connection reset, timeout) are retried too. Other failures, like 404 or a denied 403, are never retried.
+   */
+  void runIdempotent(Action action) throws IOException {
+    call(() -> {
+      action.execute();
+      return null;
+    }, true);
+  }
+
+  private <T> T call(Call<T> call, boolean idempotent) throws IOException {
+    long backoffMillis = INITIAL_BACKOFF_MS;
+    for (int attempt = 1;; attempt++) {
+      acquire();
+      try {
+        T result = call.execute();
+        observe(tracked);
+        return result;
+      } catch (HttpException e) {
+        observe(tracked);
+        if (attempt >= MAX_ATTEMPTS) {
+          throw e;
+        }
+        Long remaining = parseLong(header(e, RATE_LIMIT_REMAINING));
+        Long requestedPauseMillis = pauseRequestedBy(header(e, RETRY_AFTER), remaining != null && remaining <= 0, header(e, RATE_LIMIT_RESET));
+        if (isRateLimited(e, requestedPauseMillis != null, idempotent)) {
+          long pauseMillis = requestedPauseMillis != null ? requestedPauseMillis : backoffMillis;
+          LOG.warn("GitHub rate limit hit (HTTP {}), pausing requests for {} ms", e.getResponseCode(), pauseMillis);
+          pause(pauseMillis);
+        } else if (idempotent && e.getResponseCode() >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+          backOff(e, attempt, backoffMillis);
+        } else {
+          throw e;
+        }
+      } catch (SocketException | SocketTimeoutException e) {
+        if (!idempotent || attempt >= MAX_ATTEMPTS) {
+          throw e;
+        }
+        backOff(e, attempt, backoffMillis);
+      }
+      backoffMillis *= 2;
+    }
+  }
+
+  /**
+   * Wait before sending again a request that failed on its own, other requests are not paused.
+   */
+  private void backOff(IOException e, int attempt, long backoffMillis) throws InterruptedIOException {
+    LOG.debug("GitHub request failed (attempt {}/{}), retrying in {} ms: {}", attempt, MAX_ATTEMPTS, backoffMillis, e.getMessage());
+    try {
+      clock.sleep(backoffMillis);
+    } catch (InterruptedException interrupted) {
+      Thread.currentThread().interrupt();
+      throw (InterruptedIOException) new InterruptedIOException(e.getMessage()).initCause(interrupted);
+    }
+  }
+
+  /**
+   * @param rejected true when the response headers tell that GitHub rejected the request because of a rate limit
+   */
+  private static boolean isRateLimited(HttpException e, boolean rejected, boolean idempotent) {
+    int code = e.getResponseCode();
+    if (code != 429 && code != HttpURLConnection.HTTP_FORBIDDEN) {
+      return false;
+    }
+    if (rejected) {
+      return true;
+    }
+    if (!idempotent) {
+      // Without proof that it was rejected, sending a write again could publish it twice
+      return false;
+    }
+    String message = e.getMessage();
+    return code == 429 || (message != null
+      && (message.toLowerCase(Locale.ENGLISH).contains("rate limit") || message.toLowerCase(Locale.ENGLISH).contains("abuse")));
+  }
+
+  @CheckForNull
+  private static String header(HttpException e, String name) {
+    Map<String, List<String>> headers = e.getResponseHeaderFields();
+    if (headers == null) {
+      return null;
+    }
+    for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+      // HTTP/2 header names are lower case
+      if (name.equalsIgnoreCase(header.getKey()) && header.getValue() != null && !header.getValue().isEmpty()) {
+        return header.getValue().get(0);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Block until a request can be sent.
+   */
+  void acquire() {
+    try {
+      long waitMillis;
+      while ((waitMillis = reserve()) > 0) {
+        clock.sleep(waitMillis);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for GitHub rate limit", e);
+    }
+  }
+
+  /**
+   * @return 0 if a token was taken, otherwise the time to wait before trying again
+   */
+  private synchronized long reserve() {
+    long now = clock.currentTimeMillis();
+    if (now < pausedUntilMillis) {
+      return pausedUntilMillis - now;
+    }
+    if (Double.isInfinite(rate)) {
+      return 0;
+    }
+    tokens = Math.min(capacity, tokens + (now - lastRefillMillis) * rate / 1000.0);
+    lastRefillMillis = now;
+    if (tokens >= 1) {
+      tokens--;
+      return 0;
+    }
+    return Math.max(1, (long) Math.ceil((1 - tokens) * 1000.0 / rate));
+  }
+
+  /**
+   * Stop sending any request during the given time.
+   */
+  synchronized void pause(long millis) {
+    pausedUntilMillis = Math.max(pausedUntilMillis, clock.currentTimeMillis() + Math.min(millis, MAX_PAUSE_MS));
+  }
+
+  private void observe(@Nullable GitHub github) {
+    if (github == null) {
+      return;
+    }
+    GHRateLimit rateLimit = github.lastRateLimit();
+    if (rateLimit != null && rateLimit.reset != null) {
+      updateRateLimit(rateLimit.remaining, rateLimit.limit, rateLimit.reset.getTime());
+    }
+  }
+
+  /**
+   * Keep the configured rate while the budget is healthy. Once it runs low, spread what remains over the time left
+   * before the rate limit window is reset, and pause when it is exhausted.
+   */
+  synchronized void updateRateLimit(int remaining, int limit, long resetMillis) {
+    long now = clock.currentTimeMillis();
+    long untilReset = Math.max(1_000, resetMillis - now);
+    if (remaining <= 0) {
+      rate = configuredRate;
+      pause(untilReset);
+      return;
+    }
+    if (remaining >= Math.max(LOW_BUDGET_REQUESTS, limit * LOW_BUDGET_FRACTION)) {
+      rate = configuredRate;
+      return;
+    }
+    double adaptiveRate = remaining * 1000.0 / untilReset;
+    rate = Math.min(configuredRate, Math.max(MIN_REQUESTS_PER_SECOND, adaptiveRate));
+  }
+
+  synchronized double currentRate() {
+    return rate;
+  }
+
+  /**
+   * Honor GitHub "primary" rate limit: X-RateLimit-Remaining is 0 and X-RateLimit-Reset tells when to resume.
+   */
+  RateLimitHandler rateLimitHandler() {
+    return new RateLimitHandler() {
+      @Override
+      public void onError(IOException e, HttpURLConnection uc) throws IOException {
+        waitBeforeRetry(e, uc, true);
+      }
+    };
+  }
+
+  /**
+   * Honor GitHub "secondary" (abuse) rate limit: Retry-After tells when to resume.
+   */
+  AbuseLimitHandler abuseLimitHandler() {
+    return new AbuseLimitHandler() {
+      @Override
+      public void onError(IOException e, HttpURLConnection uc) throws IOException {
+        waitBeforeRetry(e, uc, false);
+      }
+    };
+  }
+
+  private void waitBeforeRetry(IOException e, HttpURLConnection uc, boolean budgetExhausted) throws IOException {
+    Long requestedPauseMillis = pauseRequestedBy(uc.getHeaderField(RETRY_AFTER), budgetExhausted, uc.getHeaderField(RATE_LIMIT_RESET));
+    long pauseMillis = requestedPauseMillis != null ? requestedPauseMillis : INITIAL_BACKOFF_MS;
+    LOG.warn("GitHub rate limit reached, pausing requests for {} ms", pauseMillis);
+    pause(pauseMillis);
+    try {
+      // the library retries the request as soon as the handler returns
+      acquire();
+    } catch (IllegalStateException interrupted) {
+      throw (IOException) new InterruptedIOException(e.getMessage()).initCause(interrupted);
+    }
+  }
+
+  /**
+   * @return the pause GitHub asks for, either with Retry-After or with X-RateLimit-Reset once the budget is exhausted,
+   * or null when the response doesn't tell
+   */
+  @CheckForNull
+  private Long pauseRequestedBy(@Nullable String retryAfter, boolean budgetExhausted, @Nullable String rateLimitReset) {
+    Long retryAfterSeconds = parseLong(retryAfter);
+    if (retryAfterSeconds != null) {
+      return TimeUnit.SECONDS.toMillis(retryAfterSeconds);
+    }
+    Long resetEpochSeconds = parseLong(rateLimitReset);
+    if (budgetExhausted && resetEpochSeconds != null) {
+      return Math.max(INITIAL_BACKOFF_MS, TimeUnit.SECONDS.toMillis(resetEpochSeconds) - clock.currentTimeMillis());
+    }
+    return null;
+  }
+
+  @CheckForNull
+  private static Long parseLong(@Nullable String value) {
+    if (value == null) {
+      return null;
+    }
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+}
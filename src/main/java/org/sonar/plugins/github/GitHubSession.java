@@ -0,0 +1,96 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+import java.io.IOException;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.GitHubBuilder;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.api.batch.ScannerSide;
+
+/**
+ * GitHub client shared by all pull requests of the analysis. The client, and so its HTTP connections, is built once,
+ * and the repository and the authenticated login are only requested once whatever the number of pull requests.
+ */
+@ScannerSide
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class GitHubSession {
+
+  private final GitHubPluginConfiguration config;
+  private final GitHubRequestScheduler scheduler;
+  private final GitHubConnectorProvider connectorProvider;
+
+  // Separate locks, so that the repository and the login can be requested concurrently
+  private final Object repositoryLock = new Object();
+  private final Object myselfLock = new Object();
+
+  private GitHub github;
+  private GHRepository repository;
+  private String myself;
+
+  public GitHubSession(GitHubPluginConfiguration config, GitHubRequestScheduler scheduler, GitHubConnectorProvider connectorProvider) {
+    this.config = config;
+    this.scheduler = scheduler;
+    this.connectorProvider = connectorProvider;
+  }
+
+  GitHubRequestScheduler scheduler() {
+    return scheduler;
+  }
+
+  synchronized GitHub github() throws IOException {
+    if (github == null) {
+      github = new GitHubBuilder()
+        .withEndpoint(config.endpoint())
+        .withOAuthToken(config.oauth())
+        // proxy is applied by the connector
+        .withConnector(connectorProvider.connector())
+        .withRateLimitHandler(scheduler.rateLimitHandler())
+        .withAbuseLimitHandler(scheduler.abuseLimitHandler())
+        .build();
+      scheduler.track(github);
+    }
+    return github;
+  }
+
+  GHRepository repository() throws IOException {
+    synchronized (repositoryLock) {
+      if (repository == null) {
+        GitHub client = github();
+        repository = scheduler.callIdempotent(() -> client.getRepository(config.repository()));
+      }
+      return repository;
+    }
+  }
+
+  /**
+   * @return login of the account used to publish comments
+   */
+  String myself() throws IOException {
+    synchronized (myselfLock) {
+      if (myself == null) {
+        GitHub client = github();
+        myself = scheduler.callIdempotent(() -> client.getMyself().getLogin());
+      }
+      return myself;
+    }
+  }
+}
@@ -20,27 +20,50 @@
 package org.sonar.plugins.github;
 
 import java.net.URL;
-import java.util.Locale;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
 import javax.annotation.Nullable;
 import org.kohsuke.github.GHCommitState;
 import org.sonar.api.batch.postjob.issue.PostJobIssue;
 import org.sonar.api.batch.rule.Severity;
 
 public class GlobalReport {
+  private static final Comparator<ExtraIssue> EXTRA_ISSUE_ORDER = Comparator.<ExtraIssue, PostJobIssue>comparing(e -> e.issue, new IssueComparator())
+    .thenComparingInt(e -> e.sequence);
+  // Initial buffer size, so that the report is not copied while it grows
+  private static final int REPORT_HEADER_CAPACITY = 1024;
+  private static final int EXTRA_ISSUE_CAPACITY = 512;
+  private static final int MAX_INITIAL_CAPACITY = 1 << 22;
+
   private final boolean tryReportIssuesInline;
   private int[] newIssuesBySeverity = new int[Severity.values().length];
   private int extraIssueCount = 0;
   private int maxGlobalReportedIssues;
-  private final ReportBuilder builder;
+  private final MarkDownUtils markDownUtils;
+  // First extra issues, when extra issues are kept in arrival order
+  private final List<ExtraIssue> firstExtraIssues = new ArrayList<>();
+  // Most severe extra issues seen so far, least severe at the head. Null when extra issues are kept in arrival order.
+  private final PriorityQueue<ExtraIssue> mostSevereExtraIssues;
 
   public GlobalReport(MarkDownUtils markDownUtils, boolean tryReportIssuesInline) {
     this(markDownUtils, tryReportIssuesInline, GitHubPluginConfiguration.MAX_GLOBAL_ISSUES);
   }
 
   public GlobalReport(MarkDownUtils markDownUtils, boolean tryReportIssuesInline, int maxGlobalReportedIssues) {
+    this(markDownUtils, tryReportIssuesInline, maxGlobalReportedIssues, false);
+  }
+
+  /**
+   * @param keepMostSevereExtraIssues when true, issues can be processed in any order: the extra issues reported are the
+   * most severe ones, sorted like {@link IssueComparator}. Otherwise the first extra issues processed are reported.
+   */
+  public GlobalReport(MarkDownUtils markDownUtils, boolean tryReportIssuesInline, int maxGlobalReportedIssues, boolean keepMostSevereExtraIssues) {
     this.tryReportIssuesInline = tryReportIssuesInline;
     this.maxGlobalReportedIssues = maxGlobalReportedIssues;
-    this.builder = new MarkDownReportBuilder(markDownUtils);
+    this.markDownUtils = markDownUtils;
+    this.mostSevereExtraIssues = keepMostSevereExtraIssues ? new PriorityQueue<>(EXTRA_ISSUE_ORDER.reversed()) : null;
   }
 
   private void increment(Severity severity) {
@@ -48,11 +71,26 @@ public class GlobalReport {
   }
 
   public String formatForMarkdown() {
+    long capacity = REPORT_HEADER_CAPACITY + (long) EXTRA_ISSUE_CAPACITY * Math.min(extraIssueCount, maxGlobalReportedIssues);
+    StringBuilder markdown = new StringBuilder((int) Math.min(capacity, MAX_INITIAL_CAPACITY));
+    writeMarkdown(markdown);
+    return markdown.toString();
+  }
+
+  /**
+   * Write the report in a single pass.
+   */
+  public void writeMarkdown(Appendable out) {
+    StreamingMarkDownReportBuilder builder = new StreamingMarkDownReportBuilder(markDownUtils, out);
     int newIssues = countNewIssues();
     if (newIssues == 0) {
-      return "SonarQube analysis reported no issues.";
+      builder.append("SonarQube analysis reported no issues.");
+      return;
     }
 
+    for (ExtraIssue extraIssue : reportedExtraIssues()) {
+      builder.registerExtraIssue(extraIssue.issue, extraIssue.gitHubUrl);
+    }
     boolean hasInlineIssues = newIssues > extraIssueCount;
     boolean extraIssuesTruncated = extraIssueCount > maxGlobalReportedIssues;
     builder.append("SonarQube analysis reported ").append(newIssues).append(" issue").append(newIssues > 1 ? "s" : "").append("\n");
@@ -67,7 +105,7 @@ public class GlobalReport {
       appendExtraIssues(builder, hasInlineIssues, extraIssuesTruncated);
     }
 
-    return builder.toString();
+    builder.finish();
   }
 
   private void appendExtraIssues(ReportBuilder builder, boolean hasInlineIssues, boolean extraIssuesTruncated) {
@@ -139,7 +177,7 @@ public class GlobalReport {
       } else {
         sb.append(" and ");
       }
-      sb.append(issueCount).append(" ").append(severity.name().toLowerCase(Locale.ENGLISH));
+      sb.append(issueCount).append(" ").append(SeverityMarkup.of(severity).lowerCaseName());
     }
   }
 
@@ -149,7 +187,7 @@ public class GlobalReport {
       builder
         .append("* ").append(severity)
         .append(" ").append(issueCount)
-        .append(" ").append(severity.name().toLowerCase(Locale.ENGLISH))
+        .append(" ").append(SeverityMarkup.of(severity).lowerCaseName())
         .append("\n");
     }
   }
@@ -157,13 +195,33 @@ public class GlobalReport {
   public void process(PostJobIssue issue, @Nullable URL gitHubUrl, boolean reportedOnDiff) {
     increment(issue.severity());
     if (!reportedOnDiff) {
-      if (extraIssueCount < maxGlobalReportedIssues) {
-        builder.registerExtraIssue(issue, gitHubUrl);
+      if (mostSevereExtraIssues != null) {
+        keepIfMostSevere(new ExtraIssue(issue, gitHubUrl, extraIssueCount));
+      } else if (extraIssueCount < maxGlobalReportedIssues) {
+        firstExtraIssues.add(new ExtraIssue(issue, gitHubUrl, extraIssueCount));
       }
       extraIssueCount++;
     }
   }
 
+  private void keepIfMostSevere(ExtraIssue extraIssue) {
+    if (mostSevereExtraIssues.size() < maxGlobalReportedIssues) {
+      mostSevereExtraIssues.add(extraIssue);
+    } else if (!mostSevereExtraIssues.isEmpty() && EXTRA_ISSUE_ORDER.compare(extraIssue, mostSevereExtraIssues.peek()) < 0) {
+      mostSevereExtraIssues.poll();
+      mostSevereExtraIssues.add(extraIssue);
+    }
+  }
+
+  private List<ExtraIssue> reportedExtraIssues() {
+    if (mostSevereExtraIssues == null) {
+      return firstExtraIssues;
+    }
+    List<ExtraIssue> sorted = new ArrayList<>(mostSevereExtraIssues);
+    sorted.sort(EXTRA_ISSUE_ORDER);
+    return sorted;
+  }
+
   public boolean hasNewIssue() {
     return countNewIssues() > 0;
   }
@@ -171,4 +229,16 @@ public class GlobalReport {
   private int countNewIssues() {
     return newIssues(Severity.BLOCKER) + newIssues(Severity.CRITICAL) + newIssues(Severity.MAJOR) + newIssues(Severity.MINOR) + newIssues(Severity.INFO);
   }
+
+  private static class ExtraIssue {
+    private final PostJobIssue issue;
+    private final URL gitHubUrl;
+    private final int sequence;
+
+    private ExtraIssue(PostJobIssue issue, @Nullable URL gitHubUrl, int sequence) {
+      this.issue = issue;
+      this.gitHubUrl = gitHubUrl;
+      this.sequence = sequence;
+    }
+  }
 }
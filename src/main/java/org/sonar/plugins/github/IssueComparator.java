@@ -19,13 +19,25 @@
  */
 package org.sonar.plugins.github;
 
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.sonar.api.batch.postjob.issue.PostJobIssue;
 import org.sonar.api.batch.rule.Severity;
 
 public final class IssueComparator implements Comparator<PostJobIssue> {
+
+  private static final int LINE_BITS = 33;
+  private static final int COMPONENT_BITS = 28;
+  private static final int SEVERITY_SHIFT = LINE_BITS + COMPONENT_BITS;
+  private static final int RADIX_BITS = 8;
+  private static final int RADIX = 1 << RADIX_BITS;
+
   @Override
   public int compare(@Nullable PostJobIssue left, @Nullable PostJobIssue right) {
     // Most severe issues should be displayed first.
@@ -73,4 +85,107 @@ public final class IssueComparator implements Comparator<PostJobIssue> {
       return leftLine.compareTo(rightLine);
     }
   }
+
+  /**
+   * Sorts the issues in the same order as {@link #compare}, and keeps the order of issues that compare equal. Each issue is
+   * turned once into a packed key (severity, rank of the component key, line) and keys are sorted with a stable radix sort,
+   * so component keys are only compared once per distinct value.
+   */
+  public static void sort(List<PostJobIssue> issues) {
+    int size = issues.size();
+    if (size < 2) {
+      return;
+    }
+    long[] keys = sortKeys(issues);
+    if (keys == null) {
+      issues.sort(new IssueComparator());
+      return;
+    }
+    int[] order = radixSort(keys);
+    PostJobIssue[] sorted = new PostJobIssue[size];
+    for (int i = 0; i < size; i++) {
+      sorted[i] = issues.get(order[i]);
+    }
+    for (int i = 0; i < size; i++) {
+      issues.set(i, sorted[i]);
+    }
+  }
+
+  /**
+   * @return packed keys, or null when issues can't be represented that way (missing data, too many components)
+   */
+  @CheckForNull
+  private static long[] sortKeys(List<PostJobIssue> issues) {
+    Map<String, Integer> componentRanks = new HashMap<>();
+    for (PostJobIssue issue : issues) {
+      if (issue == null || issue.severity() == null || issue.componentKey() == null) {
+        return null;
+      }
+      componentRanks.put(issue.componentKey(), 0);
+    }
+    if (componentRanks.size() >= (1 << COMPONENT_BITS)) {
+      return null;
+    }
+    String[] componentKeys = componentRanks.keySet().toArray(new String[componentRanks.size()]);
+    Arrays.sort(componentKeys);
+    for (int i = 0; i < componentKeys.length; i++) {
+      componentRanks.put(componentKeys[i], i);
+    }
+    int maxSeverity = Severity.values().length - 1;
+    long[] keys = new long[issues.size()];
+    for (int i = 0; i < keys.length; i++) {
+      PostJobIssue issue = issues.get(i);
+      Integer line = issue.line();
+      // Most severe first, then component key, then line with "no line" first
+      long lineKey = line == null ? 0L : ((long) line - Integer.MIN_VALUE + 1);
+      keys[i] = ((long) (maxSeverity - issue.severity().ordinal()) << SEVERITY_SHIFT)
+        | ((long) componentRanks.get(issue.componentKey()) << LINE_BITS)
+        | lineKey;
+    }
+    return keys;
+  }
+
+  /**
+   * Stable LSD radix sort of unsigned keys.
+   * @return indexes of the keys in sorted order
+   */
+  private static int[] radixSort(long[] keys) {
+    int size = keys.length;
+    long[] currentKeys = keys.clone();
+    int[] currentOrder = new int[size];
+    for (int i = 0; i < size; i++) {
+      currentOrder[i] = i;
+    }
+    long[] nextKeys = new long[size];
+    int[] nextOrder = new int[size];
+    int[] counts = new int[RADIX];
+    for (int shift = 0; shift < Long.SIZE; shift += RADIX_BITS) {
+      Arrays.fill(counts, 0);
+      for (long key : currentKeys) {
+        counts[(int) ((key >>> shift) & (RADIX - 1))]++;
+      }
+      if (counts[(int) ((currentKeys[0] >>> shift) & (RADIX - 1))] == size) {
+        // All keys share this digit
+        continue;
+      }
+      int total = 0;
+      for (int digit = 0; digit < RADIX; digit++) {
+        int count = counts[digit];
+        counts[digit] = total;
+        total += count;
+      }
+      for (int i = 0; i < size; i++) {
+        int target = counts[(int) ((currentKeys[i] >>> shift) & (RADIX - 1))]++;
+        nextKeys[target] = currentKeys[i];
+        nextOrder[target] = currentOrder[i];
+      }
+      long[] swapKeys = currentKeys;
+      currentKeys = nextKeys;
+      nextKeys = swapKeys;
+      int[] swapOrder = currentOrder;
+      currentOrder = nextOrder;
+      nextOrder = swapOrder;
+    }
+    return currentOrder;
+  }
 }
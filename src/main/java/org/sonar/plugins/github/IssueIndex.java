@@ -0,0 +1,134 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import org.sonar.api.batch.fs.InputComponent;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.postjob.issue.PostJobIssue;
+
+/**
+ * New issues of the analysis, sorted once and grouped by file, so that each pull request only has to look at the
+ * files it touches.
+ */
+final class IssueIndex {
+
+  private final List<PostJobIssue> sortedIssues;
+  private final Map<InputFile, int[]> issueIndexesByFile;
+  private final int[] otherIssueIndexes;
+
+  private IssueIndex(List<PostJobIssue> sortedIssues, Map<InputFile, int[]> issueIndexesByFile, int[] otherIssueIndexes) {
+    this.sortedIssues = sortedIssues;
+    this.issueIndexesByFile = issueIndexesByFile;
+    this.otherIssueIndexes = otherIssueIndexes;
+  }
+
+  static IssueIndex of(Iterable<PostJobIssue> issues) {
+    return of(issues, true);
+  }
+
+  /**
+   * @param sort when false, issues are kept in the order in which they were reported
+   */
+  static IssueIndex of(Iterable<PostJobIssue> issues, boolean sort) {
+    List<PostJobIssue> sortedIssues = new ArrayList<>();
+    for (PostJobIssue issue : issues) {
+      if (issue.isNew()) {
+        sortedIssues.add(issue);
+      }
+    }
+    if (sort) {
+      // Stable sort, issues that compare equal keep the order in which they were reported
+      IssueComparator.sort(sortedIssues);
+    }
+
+    Map<InputFile, IntList> indexesByFile = new LinkedHashMap<>();
+    IntList otherIndexes = new IntList();
+    for (int i = 0; i < sortedIssues.size(); i++) {
+      InputComponent inputComponent = sortedIssues.get(i).inputComponent();
+      if (inputComponent != null && inputComponent.isFile()) {
+        indexesByFile.computeIfAbsent((InputFile) inputComponent, f -> new IntList()).add(i);
+      } else {
+        otherIndexes.add(i);
+      }
+    }
+    Map<InputFile, int[]> issueIndexesByFile = new LinkedHashMap<>();
+    indexesByFile.forEach((file, indexes) -> issueIndexesByFile.put(file, indexes.toArray()));
+    return new IssueIndex(Collections.unmodifiableList(sortedIssues), issueIndexesByFile, otherIndexes.toArray());
+  }
+
+  /**
+   * @return number of new issues
+   */
+  int size() {
+    return sortedIssues.size();
+  }
+
+  /**
+   * Issues that are not on a file, plus the issues of the files accepted by the predicate, in index order.
+   * The predicate is evaluated once per file.
+   */
+  List<PostJobIssue> issues(Predicate<InputFile> fileFilter) {
+    IntList selected = new IntList();
+    selected.addAll(otherIssueIndexes);
+    for (Map.Entry<InputFile, int[]> entry : issueIndexesByFile.entrySet()) {
+      if (fileFilter.test(entry.getKey())) {
+        selected.addAll(entry.getValue());
+      }
+    }
+    int[] indexes = selected.toArray();
+    Arrays.sort(indexes);
+    List<PostJobIssue> result = new ArrayList<>(indexes.length);
+    for (int index : indexes) {
+      result.add(sortedIssues.get(index));
+    }
+    return result;
+  }
+
+  private static final class IntList {
+    private int[] values = new int[8];
+    private int size;
+
+    void add(int value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    void addAll(int[] other) {
+      if (size + other.length > values.length) {
+        values = Arrays.copyOf(values, Math.max(size + other.length, size * 2));
+      }
+      System.arraycopy(other, 0, values, size, other.length);
+      size += other.length;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+  }
+}
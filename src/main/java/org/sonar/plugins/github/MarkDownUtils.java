@@ -22,10 +22,10 @@ package org.sonar.plugins.github;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.net.URLEncoder;
-import java.util.Locale;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import javax.annotation.Nullable;
-import org.apache.commons.lang.StringUtils;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.InstantiationStrategy;
 import org.sonar.api.batch.ScannerSide;
@@ -36,8 +36,13 @@ import org.sonar.api.config.Settings;
 @InstantiationStrategy(InstantiationStrategy.PER_BATCH)
 public class MarkDownUtils {
 
-  private static final String IMAGES_ROOT_URL = "https://sonarsource.github.io/sonar-github/";
+  private static final String IMAGES_ROOT_URL = SeverityMarkup.imagesRootUrl();
+  // Issues of an analysis share a small number of rules, the cache is only bounded to protect from unusual analyses
+  static final int RULE_LINK_CACHE_SIZE = 1024;
   private final String ruleUrlPrefix;
+  private final Map<String, String> ruleLinkCache = new ConcurrentHashMap<>();
+  private final LongAdder ruleLinkCacheHits = new LongAdder();
+  private final LongAdder ruleLinkCacheMisses = new LongAdder();
 
   public MarkDownUtils(Settings settings) {
     // If server base URL was not configured in SQ server then is is better to take URL configured on batch side
@@ -49,18 +54,23 @@ public class MarkDownUtils {
   }
 
   public String inlineIssue(Severity severity, String message, String ruleKey) {
+    String imageLink = formatImageLink(severity);
     String ruleLink = getRuleLink(ruleKey);
-    StringBuilder sb = new StringBuilder();
-    sb.append(formatImageLink(severity))
+    return new StringBuilder(imageLink.length() + message.length() + ruleLink.length() + 2)
+      .append(imageLink)
       .append(" ")
       .append(message)
       .append(" ")
-      .append(ruleLink);
-    return sb.toString();
+      .append(ruleLink)
+      .toString();
   }
 
-  private static String getLocation(URL url) {
-    String filename = Pattern.compile(".*/", Pattern.DOTALL).matcher(url.toString()).replaceAll(StringUtils.EMPTY);
+  /**
+   * @return last segment of the URL (file name and line anchor), or "Project"
+   */
+  static String getLocation(URL url) {
+    String location = url.toString();
+    String filename = location.substring(location.lastIndexOf('/') + 1);
     if (filename.length() <= 0) {
       filename = "Project";
     }
@@ -81,7 +91,25 @@ public class MarkDownUtils {
   }
 
   String getRuleLink(String ruleKey) {
-    return "[![rule](" + IMAGES_ROOT_URL + "rule.png)](" + ruleUrlPrefix + "coding_rules#rule_key=" + encodeForUrlParam(ruleKey) + ")";
+    String ruleLink = ruleLinkCache.get(ruleKey);
+    if (ruleLink != null) {
+      ruleLinkCacheHits.increment();
+      return ruleLink;
+    }
+    ruleLinkCacheMisses.increment();
+    ruleLink = "[![rule](" + IMAGES_ROOT_URL + "rule.png)](" + ruleUrlPrefix + "coding_rules#rule_key=" + encodeForUrlParam(ruleKey) + ")";
+    if (ruleLinkCache.size() < RULE_LINK_CACHE_SIZE) {
+      ruleLinkCache.putIfAbsent(ruleKey, ruleLink);
+    }
+    return ruleLink;
+  }
+
+  long ruleLinkCacheHits() {
+    return ruleLinkCacheHits.sum();
+  }
+
+  long ruleLinkCacheMisses() {
+    return ruleLinkCacheMisses.sum();
   }
 
   static String encodeForUrlParam(String url) {
@@ -94,10 +122,10 @@ public class MarkDownUtils {
   }
 
   static String getImageUrl(Severity severity) {
-    return IMAGES_ROOT_URL + "severity-" + severity.name().toLowerCase(Locale.ENGLISH) + ".png";
+    return SeverityMarkup.of(severity).imageUrl();
   }
 
   static String formatImageLink(Severity severity) {
-    return String.format("![%s](%s 'Severity: %s')", severity.name(), getImageUrl(severity), severity.name());
+    return SeverityMarkup.of(severity).imageLink();
   }
 }
@@ -0,0 +1,47 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import okhttp3.OkHttpClient;
+import okhttp3.OkUrlFactory;
+import org.kohsuke.github.HttpConnector;
+
+/**
+ * Send github-api requests through OkHttp.
+ */
+class OkHttpConnector implements HttpConnector {
+
+  private final OkUrlFactory urlFactory;
+
+  OkHttpConnector(OkHttpClient client) {
+    this.urlFactory = new OkUrlFactory(client);
+  }
+
+  @Override
+  public HttpURLConnection connect(URL url) {
+    HttpURLConnection connection = urlFactory.open(url);
+    // GitHub allows to reuse responses for 60s without checking them. Always revalidate instead, so that changes made
+    // meanwhile are seen: an unchanged resource is answered by a 304, that doesn't count against the rate limit.
+    connection.setRequestProperty("Cache-Control", "max-age=0");
+    return connection;
+  }
+}
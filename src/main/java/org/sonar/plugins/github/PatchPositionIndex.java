@@ -0,0 +1,174 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+import java.util.Arrays;
+
+/**
+ * Maps file lines to patch positions for a single file of the pull request.
+ * Consecutive lines of a hunk have consecutive positions, so the mapping is stored as runs
+ * (first line, first position, length) in sorted primitive arrays and looked up by binary search.
+ */
+final class PatchPositionIndex {
+
+  static final int NO_POSITION = -1;
+
+  static final PatchPositionIndex EMPTY = new PatchPositionIndex(new int[0], new int[0], new int[0], 0);
+
+  private final int[] runLines;
+  private final int[] runPositions;
+  private final int[] runLengths;
+  private final int size;
+
+  private PatchPositionIndex(int[] runLines, int[] runPositions, int[] runLengths, int size) {
+    this.runLines = runLines;
+    this.runPositions = runPositions;
+    this.runLengths = runLengths;
+    this.size = size;
+  }
+
+  static PatchPositionIndex parse(String patch, boolean ignoreUnchangedLines) {
+    Builder builder = new Builder();
+    UnifiedDiffParser.parse(patch, ignoreUnchangedLines, builder::add);
+    return builder.build();
+  }
+
+  /**
+   * @return number of lines that can be commented
+   */
+  int size() {
+    return size;
+  }
+
+  boolean contains(int line) {
+    return findRun(line) >= 0;
+  }
+
+  /**
+   * @return the patch position of the line, or {@link #NO_POSITION} if the line is not part of the patch
+   */
+  int position(int line) {
+    int run = findRun(line);
+    return run < 0 ? NO_POSITION : (runPositions[run] + line - runLines[run]);
+  }
+
+  void forEach(UnifiedDiffParser.PositionConsumer consumer) {
+    for (int run = 0; run < runLines.length; run++) {
+      for (int i = 0; i < runLengths[run]; i++) {
+        consumer.accept(runLines[run] + i, runPositions[run] + i);
+      }
+    }
+  }
+
+  private int findRun(int line) {
+    int low = 0;
+    int high = runLines.length - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (runLines[mid] > line) {
+        high = mid - 1;
+      } else if ((long) line - runLines[mid] >= runLengths[mid]) {
+        low = mid + 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  static final class Builder {
+    private int[] lines = new int[16];
+    private int[] positions = new int[16];
+    private int count;
+    private boolean sorted = true;
+
+    void add(int line, int position) {
+      if (count == lines.length) {
+        lines = Arrays.copyOf(lines, count * 2);
+        positions = Arrays.copyOf(positions, count * 2);
+      }
+      if (count > 0 && line <= lines[count - 1]) {
+        sorted = false;
+      }
+      lines[count] = line;
+      positions[count] = position;
+      count++;
+    }
+
+    PatchPositionIndex build() {
+      if (count == 0) {
+        return EMPTY;
+      }
+      if (!sorted) {
+        sortKeepingLastPosition();
+      }
+      int runs = 0;
+      for (int i = 0; i < count; i++) {
+        if (i == 0 || !extendsRun(i)) {
+          runs++;
+        }
+      }
+      int[] runLines = new int[runs];
+      int[] runPositions = new int[runs];
+      int[] runLengths = new int[runs];
+      int run = -1;
+      for (int i = 0; i < count; i++) {
+        if (i == 0 || !extendsRun(i)) {
+          run++;
+          runLines[run] = lines[i];
+          runPositions[run] = positions[i];
+        }
+        runLengths[run]++;
+      }
+      return new PatchPositionIndex(runLines, runPositions, runLengths, count);
+    }
+
+    private boolean extendsRun(int i) {
+      return lines[i] == lines[i - 1] + 1 && positions[i] == positions[i - 1] + 1;
+    }
+
+    /**
+     * Malformed patches may report a line more than once: like a map, the last reported position wins.
+     */
+    private void sortKeepingLastPosition() {
+      long[] keys = new long[count];
+      for (int i = 0; i < count; i++) {
+        keys[i] = ((long) lines[i] << 32) | i;
+      }
+      Arrays.sort(keys);
+      int[] sortedLines = new int[count];
+      int[] sortedPositions = new int[count];
+      int unique = 0;
+      for (int i = 0; i < count; i++) {
+        int index = (int) keys[i];
+        int line = (int) (keys[i] >> 32);
+        if (unique > 0 && sortedLines[unique - 1] == line) {
+          unique--;
+        }
+        sortedLines[unique] = line;
+        sortedPositions[unique] = positions[index];
+        unique++;
+      }
+      lines = sortedLines;
+      positions = sortedPositions;
+      count = unique;
+    }
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import javax.annotation.CheckForNull;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.plugins.github.ReviewCommentReconciler.Location;
+
+/**
+ * Comments published on a pull request by the last analysis of its head commit, recorded in a local file so that the
+ * next analysis of the same commit doesn't need to list them again. A snapshot is only trusted when the head commit and
+ * the comment counts of the pull request are still the ones observed after the publication.
+ */
+final class PublishedCommentsState {
+
+  private static final Logger LOG = Loggers.get(PublishedCommentsState.class);
+
+  private static final String REPOSITORY = "repository";
+  private static final String PULL_REQUEST = "pullRequest";
+  private static final String HEAD_SHA = "headSha";
+  private static final String REVIEW_COMMENT_COUNT = "reviewCommentCount";
+  private static final String ISSUE_COMMENT_COUNT = "issueCommentCount";
+  private static final String REVIEW_COMMENT_PREFIX = "reviewComment.";
+  private static final String GLOBAL_COMMENT_PREFIX = "globalComment.";
+
+  private final String repository;
+  private final int pullRequest;
+  private final String headSha;
+  private final Map<Location, Long> reviewCommentIds = new HashMap<>();
+  private final Map<Location, String> reviewCommentHashes = new HashMap<>();
+  private final Map<Long, String> globalCommentHashes = new HashMap<>();
+  private int reviewCommentCount;
+  private int issueCommentCount;
+
+  PublishedCommentsState(String repository, int pullRequest, String headSha) {
+    this.repository = repository;
+    this.pullRequest = pullRequest;
+    this.headSha = headSha;
+  }
+
+  /**
+   * @return File holding the state of a pull request, whatever its head commit
+   */
+  static Path file(File directory, String repository, int pullRequest) {
+    return directory.toPath().resolve(repository.replace('/', '_') + "_" + pullRequest + ".properties");
+  }
+
+  synchronized void addReviewComment(long id, String path, int position, String bodyHash) {
+    Location location = new Location(path, position);
+    reviewCommentIds.put(location, id);
+    reviewCommentHashes.put(location, bodyHash);
+  }
+
+  synchronized void addGlobalComment(long id, String bodyHash) {
+    globalCommentHashes.put(id, bodyHash);
+  }
+
+  synchronized void setCommentCounts(int reviewCommentCount, int issueCommentCount) {
+    this.reviewCommentCount = reviewCommentCount;
+    this.issueCommentCount = issueCommentCount;
+  }
+
+  /**
+   * @return true when the snapshot was taken on the same head commit, and no comment was added or removed since then
+   */
+  synchronized boolean matches(String repository, int pullRequest, String headSha, int reviewCommentCount, int issueCommentCount) {
+    return this.repository.equals(repository) && this.pullRequest == pullRequest && this.headSha.equals(headSha)
+      && this.reviewCommentCount == reviewCommentCount && this.issueCommentCount == issueCommentCount;
+  }
+
+  synchronized Map<Location, String> reviewCommentHashes() {
+    return Collections.unmodifiableMap(new HashMap<>(reviewCommentHashes));
+  }
+
+  @CheckForNull
+  synchronized Long reviewCommentId(Location location) {
+    return reviewCommentIds.get(location);
+  }
+
+  synchronized Map<Long, String> globalCommentHashes() {
+    return Collections.unmodifiableMap(new HashMap<>(globalCommentHashes));
+  }
+
+  /**
+   * @return the state recorded in the file, or null when there is none or it can't be read
+   */
+  @CheckForNull
+  static PublishedCommentsState load(Path file) {
+    if (!Files.isRegularFile(file)) {
+      return null;
+    }
+    Properties properties = new Properties();
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      properties.load(reader);
+      PublishedCommentsState state = new PublishedCommentsState(required(properties, REPOSITORY), Integer.parseInt(required(properties, PULL_REQUEST)),
+        required(properties, HEAD_SHA));
+      state.setCommentCounts(Integer.parseInt(required(properties, REVIEW_COMMENT_COUNT)), Integer.parseInt(required(properties, ISSUE_COMMENT_COUNT)));
+      for (String key : properties.stringPropertyNames()) {
+        String value = properties.getProperty(key);
+        if (key.startsWith(REVIEW_COMMENT_PREFIX)) {
+          // position:hash:path, the path being the only part that may contain a colon
+          String[] parts = value.split(":", 3);
+          if (parts.length != 3) {
+            throw new IllegalArgumentException("Invalid review comment: " + value);
+          }
+          state.addReviewComment(Long.parseLong(key.substring(REVIEW_COMMENT_PREFIX.length())), parts[2], Integer.parseInt(parts[0]), parts[1]);
+        } else if (key.startsWith(GLOBAL_COMMENT_PREFIX)) {
+          state.addGlobalComment(Long.parseLong(key.substring(GLOBAL_COMMENT_PREFIX.length())), value);
+        }
+      }
+      return state;
+    } catch (IOException | IllegalArgumentException e) {
+      LOG.debug("Ignoring invalid published comments state " + file, e);
+      return null;
+    }
+  }
+
+  private static String required(Properties properties, String key) {
+    String value = properties.getProperty(key);
+    if (value == null) {
+      throw new IllegalArgumentException("Missing " + key);
+    }
+    return value;
+  }
+
+  /**
+   * Write the state to a temporary file first, so that a concurrent reader never sees a partial state.
+   */
+  synchronized void store(Path file) throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty(REPOSITORY, repository);
+    properties.setProperty(PULL_REQUEST, Integer.toString(pullRequest));
+    properties.setProperty(HEAD_SHA, headSha);
+    properties.setProperty(REVIEW_COMMENT_COUNT, Integer.toString(reviewCommentCount));
+    properties.setProperty(ISSUE_COMMENT_COUNT, Integer.toString(issueCommentCount));
+    for (Map.Entry<Location, Long> entry : reviewCommentIds.entrySet()) {
+      Location location = entry.getKey();
+      properties.setProperty(REVIEW_COMMENT_PREFIX + entry.getValue(), location.position() + ":" + reviewCommentHashes.get(location) + ":" + location.path());
+    }
+    for (Map.Entry<Long, String> entry : globalCommentHashes.entrySet()) {
+      properties.setProperty(GLOBAL_COMMENT_PREFIX + entry.getKey(), entry.getValue());
+    }
+    Files.createDirectories(file.getParent());
+    Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+    try {
+      try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+        properties.store(writer, null);
+      }
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+}
@@ -19,20 +19,24 @@
  */
 package org.sonar.plugins.github;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.kohsuke.github.GHCommitState;
@@ -46,8 +50,7 @@ import org.kohsuke.github.GHPullRequestReviewComment;
 import org.kohsuke.github.GHPullRequestReviewEvent;
 import org.kohsuke.github.GHPullRequestReviewState;
 import org.kohsuke.github.GHRepository;
-import org.kohsuke.github.GitHub;
-import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.PagedIterable;
 import org.sonar.api.batch.fs.InputComponent;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.InputPath;
@@ -66,41 +69,93 @@ public class PullRequestFacade {
   static final String COMMIT_CONTEXT = "sonarqube";
 
   private final GitHubPluginConfiguration config;
-  private Map<String, Map<Integer, Integer>> patchPositionMappingByFile;
-  private Map<String, Map<Integer, GHPullRequestReviewComment>> existingReviewCommentsByLocationByFile = new HashMap<>();
+  private final GitHubSession session;
+  private final GitHubRequestScheduler scheduler;
+  private Map<String, String> patchByFile;
+  private final Map<String, PatchPositionIndex> patchPositionIndexByFile = new ConcurrentHashMap<>();
+  private final PathResolver pathResolver = new PathResolver();
+  private final Map<InputPath, Optional<String>> pathCache = new ConcurrentHashMap<>();
+  private final ReviewCommentReconciler reviewComments = new ReviewCommentReconciler();
   private GHRepository ghRepo;
   private GHPullRequest pr;
-  private Map<Long, GHPullRequestReviewComment> reviewCommentToBeDeletedById = new HashMap<>();
   private File gitBaseDir;
   private String myself;
   private GHPullRequestReviewBuilder reviewBuilder;
+  private Path stateFile;
+  private PublishedCommentsState previousState;
+  private volatile PublishedCommentsState publishedState;
+  private int reviewCommentCount;
+  private int issueCommentCount;
+  private Optional<String> commitStatusTargetUrl;
 
-  public PullRequestFacade(GitHubPluginConfiguration config) {
+  /**
+   * Only for tests: the plugin shares a single {@link GitHubSession} between all pull requests.
+   */
+  PullRequestFacade(GitHubPluginConfiguration config) {
+    this(config, new GitHubSession(config, new GitHubRequestScheduler(config), new GitHubConnectorProvider(config)));
+  }
+
+  public PullRequestFacade(GitHubPluginConfiguration config, GitHubSession session) {
     this.config = config;
+    this.session = session;
+    this.scheduler = session.scheduler();
   }
 
+  /**
+   * Independent lookups are sent concurrently: the login of the account while the pull request is loaded, and the
+   * files of the pull request while the local state is read.
+   */
   public void init(Integer pullRequestNumber, File projectBaseDir) {
     initGitBaseDir(projectBaseDir);
     try {
-      GitHub github;
-      if (config.isProxyConnectionEnabled()) {
-        github = new GitHubBuilder().withProxy(config.getHttpProxy()).withEndpoint(config.endpoint()).withOAuthToken(config.oauth()).build();
-      } else {
-        github = new GitHubBuilder().withEndpoint(config.endpoint()).withOAuthToken(config.oauth()).build();
-      }
-      setGhRepo(github.getRepository(config.repository()));
-      setPr(ghRepo.getPullRequest(pullRequestNumber));
+      CompletableFuture<String> myselfLookup = prefetch(session::myself);
+      setGhRepo(session.repository());
+      setPr(scheduler.callIdempotent(() -> ghRepo.getPullRequest(pullRequestNumber)));
+      CompletableFuture<Map<String, String>> patchesLookup = prefetch(() -> loadPatches(pr));
       setReviewBuilder();
       LOG.info("Starting analysis of pull request: " + pr.getHtmlUrl());
-      myself = github.getMyself().getLogin();
-      loadExistingReviewComments();
-      patchPositionMappingByFile = mapPatchPositionsToLines(pr);
+      File stateDirectory = config.stateDirectory();
+      if (stateDirectory != null && !config.useReview()) {
+        loadPublishedCommentsState(stateDirectory, ghRepo.getFullName(), pullRequestNumber);
+      }
+      myself = join(myselfLookup);
+      setPatches(join(patchesLookup));
     } catch (IOException e) {
       LOG.debug("Unable to perform GitHub WS operation", e);
       throw MessageException.of("Unable to perform GitHub WS operation: " + e.getMessage());
     }
   }
 
+  @FunctionalInterface
+  private interface Lookup<T> {
+    T get() throws IOException;
+  }
+
+  private static <T> CompletableFuture<T> prefetch(Lookup<T> lookup) {
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        return lookup.get();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+  }
+
+  private static <T> T join(CompletableFuture<T> lookup) throws IOException {
+    try {
+      return lookup.join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof UncheckedIOException) {
+        throw ((UncheckedIOException) cause).getCause();
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw e;
+    }
+  }
+
   void initGitBaseDir(File projectBaseDir) {
     File detectedGitBaseDir = findGitBaseDir(projectBaseDir);
     if (detectedGitBaseDir == null) {
@@ -119,6 +174,15 @@ public class PullRequestFacade {
     this.pr = pr;
   }
 
+  void setPatches(Map<String, String> patchByFile) {
+    this.patchByFile = patchByFile;
+    patchPositionIndexByFile.clear();
+  }
+
+  void setMyself(String myself) {
+    this.myself = myself;
+  }
+
   void setReviewBuilder() {
     if(config.useReview()){
       this.reviewBuilder = pr.createReview().commitId(pr.getHead().getSha());
@@ -137,135 +201,237 @@ public class PullRequestFacade {
 
   void setGitBaseDir(File gitBaseDir) {
     this.gitBaseDir = gitBaseDir;
+    pathCache.clear();
   }
 
   /**
-   * Load all previous comments made by provided github account.
+   * Load the comments published by the previous analysis of the same head commit. The snapshot is checked against the
+   * pull request already fetched: same head commit and same comment counts. It is removed right away, and only written
+   * back once this analysis has published all its comments. The state directory is an optional cache, so failing to
+   * use it only disables the snapshot.
    */
-  private void loadExistingReviewComments() throws IOException {
-    for (GHPullRequestReviewComment comment : pr.listReviewComments()) {
-      if (!myself.equals(comment.getUser().getLogin())) {
-        // Ignore comments from other users
-        continue;
-      }
-      if (!config.useReview() && !existingReviewCommentsByLocationByFile.containsKey(comment.getPath())) {
-        existingReviewCommentsByLocationByFile.put(comment.getPath(), new HashMap<Integer, GHPullRequestReviewComment>());
-      }
-      // By default all previous comments will be marked for deletion
-      reviewCommentToBeDeletedById.put(comment.getId(), comment);
-      if (!config.useReview()) {
-        existingReviewCommentsByLocationByFile.get(comment.getPath()).put(comment.getPosition(), comment);
-      }
+  void loadPublishedCommentsState(File stateDirectory, String repository, int pullRequestNumber) throws IOException {
+    String headSha = pr.getHead().getSha();
+    reviewCommentCount = pr.getReviewComments();
+    issueCommentCount = pr.getCommentsCount();
+    Path file;
+    PublishedCommentsState state;
+    try {
+      file = PublishedCommentsState.file(stateDirectory, repository, pullRequestNumber);
+      state = PublishedCommentsState.load(file);
+      Files.deleteIfExists(file);
+    } catch (IOException | RuntimeException e) {
+      LOG.warn("Unable to use published comments state in " + stateDirectory + ": " + e.getMessage());
+      return;
     }
+    stateFile = file;
+    if (state != null && state.matches(repository, pullRequestNumber, headSha, reviewCommentCount, issueCommentCount)) {
+      LOG.debug("Using comments previously published on commit {}", headSha);
+      previousState = state;
+    }
+    publishedState = new PublishedCommentsState(repository, pullRequestNumber, headSha);
   }
 
   /**
-   * GitHub expect review comments to be added on "patch lines" (aka position) but not on file lines.
-   * So we have to iterate over each patch and compute corresponding file line in order to later map issues to the correct position.
-   * @return Map File path -> Line -> Position
+   * Keep the patch of each file of the P/R. Patches are only parsed when an issue is reported on the file.
+   * @return Map File path -> Patch (null when there is no need to map lines or when GitHub doesn't provide a patch)
    */
-  private Map<String, Map<Integer, Integer>> mapPatchPositionsToLines(GHPullRequest pr) throws IOException {
-    Map<String, Map<Integer, Integer>> result = new HashMap<>();
-    for (GHPullRequestFileDetail file : pr.listFiles()) {
-      Map<Integer, Integer> patchLocationMapping = new HashMap<>();
-      result.put(file.getFilename(), patchLocationMapping);
-      if (config.tryReportIssuesInline() || config.ignoreUnchangedLines()) {
-        String patch = file.getPatch();
-        if (patch == null) {
-          continue;
-        }
-        processPatch(patchLocationMapping, patch, config.ignoreUnchangedLines());
-      }
+  private Map<String, String> loadPatches(GHPullRequest pr) throws IOException {
+    boolean needsPatch = config.tryReportIssuesInline() || config.ignoreUnchangedLines();
+    Map<String, String> result = new HashMap<>();
+    GitHubRequestScheduler.Listing<GHPullRequestFileDetail> files = list(pr.listFiles());
+    while (files.hasNext()) {
+      GHPullRequestFileDetail file = files.next();
+      result.put(file.getFilename(), needsPatch ? file.getPatch() : null);
     }
     return result;
   }
 
-  static void processPatch(Map<Integer, Integer> patchLocationMapping, String patch, boolean ignoreUnchangedLines) throws IOException {
-    int currentLine = -1;
-    int patchLocation = 0;
-    BufferedReader reader = new BufferedReader(new StringReader(patch));
-    String line;
-    while ((line = reader.readLine()) != null) {
-      if (line.startsWith("@")) {
-        // http://en.wikipedia.org/wiki/Diff_utility#Unified_format
-        Matcher matcher = Pattern.compile("@@\\p{IsWhite_Space}-[0-9]+(?:,[0-9]+)?\\p{IsWhite_Space}\\+([0-9]+)(?:,[0-9]+)?\\p{IsWhite_Space}@@.*").matcher(line);
-        if (!matcher.matches()) {
-          throw new IllegalStateException("Unable to parse patch line " + line + "\nFull patch: \n" + patch);
-        }
-        currentLine = Integer.parseInt(matcher.group(1));
-      } else if (line.startsWith("-")) {
-        // Skip removed lines
-      } else if (line.startsWith("+") || line.startsWith(" ")) {
-        // Count added and unmodified lines
-        if (line.startsWith("+") || !ignoreUnchangedLines) {
-          patchLocationMapping.put(currentLine, patchLocation);
-        }
-        currentLine++;
-      } else if (line.startsWith("\\")) {
-        // I'm only aware of \ No newline at end of file
-        // Ignore
-      }
-      patchLocation++;
-    }
+  /**
+   * GitHub expect review comments to be added on "patch lines" (aka position) but not on file lines.
+   * So we have to iterate over the patch and compute corresponding file line in order to map issues to the correct position.
+   * The result is computed the first time a file is requested, and may be requested concurrently.
+   */
+  private PatchPositionIndex patchPositionIndex(String path) {
+    return patchPositionIndexByFile.computeIfAbsent(path, p -> {
+      String patch = patchByFile.get(p);
+      return patch == null ? PatchPositionIndex.EMPTY : processPatch(patch, config.ignoreUnchangedLines());
+    });
   }
 
+  static PatchPositionIndex processPatch(String patch, boolean ignoreUnchangedLines) {
+    return PatchPositionIndex.parse(patch, ignoreUnchangedLines);
+  }
+
+  /**
+   * Path of the file relative to the root of the Git repository, with '/' separators. Results are cached since the same
+   * file is resolved several times for each of its issues.
+   */
+  @CheckForNull
   String getPath(InputPath inputPath) {
-    return new PathResolver().relativePath(gitBaseDir, inputPath.file());
+    return pathCache.computeIfAbsent(inputPath, p -> Optional.ofNullable(pathResolver.relativePath(gitBaseDir, p.file())).map(PullRequestFacade::normalizeSeparators))
+      .orElse(null);
+  }
+
+  private static String normalizeSeparators(String path) {
+    return File.separatorChar == '/' ? path : path.replace(File.separatorChar, '/');
   }
 
   /**
    * Test if the P/R contains the provided file path (ie this file was added/modified/updated)
    */
   public boolean hasFile(InputFile inputFile) {
-    return patchPositionMappingByFile.containsKey(getPath(inputFile));
+    return patchByFile.containsKey(getPath(inputFile));
   }
 
   /**
    * Test if the P/R contains the provided line for the file path (ie this line is "visible" in diff)
    */
   public boolean hasFileLine(InputFile inputFile, int line) {
-    return patchPositionMappingByFile.get(getPath(inputFile)).containsKey(line);
+    return patchPositionIndex(getPath(inputFile)).contains(line);
   }
 
+  /**
+   * Register the review comment of a line. Nothing is sent to GitHub until {@link #publishReviewComments()}, except in
+   * review mode where the comment is added to the pending review. Can be called concurrently for different locations.
+   */
   public void createOrUpdateReviewComment(InputFile inputFile, Integer line, String body) {
     String fullpath = getPath(inputFile);
-    Integer lineInPatch = patchPositionMappingByFile.get(fullpath).get(line);
-    try {
-      if (config.useReview()) {
+    int lineInPatch = patchPositionIndex(fullpath).position(line);
+    if (config.useReview()) {
+      // Review comments are only buffered locally, but the builder is not thread safe
+      synchronized (reviewBuilder) {
         reviewBuilder.comment(body, fullpath, lineInPatch);
-      } else if (existingReviewCommentsByLocationByFile.containsKey(fullpath) && existingReviewCommentsByLocationByFile.get(fullpath).containsKey(lineInPatch)) {
-        GHPullRequestReviewComment existingReview = existingReviewCommentsByLocationByFile.get(fullpath).get(lineInPatch);
-        if (!existingReview.getBody().equals(body)) {
-          existingReview.update(body);
+      }
+    } else {
+      reviewComments.want(fullpath, lineInPatch, body);
+    }
+  }
+
+  /**
+   * Reconcile the previous review comments of this account with the ones registered by this analysis, while they are
+   * listed. When the snapshot of the previous analysis still matches the pull request and all its comments are wanted
+   * as is, they are not listed at all. Only the comments to update or delete are kept until the listing is done. Only
+   * the difference is sent: comments whose body changed are updated, missing ones are created and the others are
+   * deleted, so that an unchanged pull request doesn't cause any write. Deletions are sent last, concurrently and
+   * retried on transient failures. A comment that was already deleted is ignored, and a comment that can't be deleted
+   * is reported but doesn't prevent deletion of the others.
+   */
+  public void publishReviewComments() {
+    List<GHPullRequestReviewComment> toUpdate = new ArrayList<>();
+    List<GHPullRequestReviewComment> toDelete = new ArrayList<>();
+    if (previousState != null && reviewComments.keepAll(previousState.reviewCommentHashes())) {
+      LOG.debug("Previous review comments are up to date");
+      previousState.reviewCommentHashes()
+        .forEach((location, bodyHash) -> recordReviewComment(previousState.reviewCommentId(location), location.path(), location.position(), bodyHash));
+    } else {
+      reconcileExistingReviewComments(toUpdate, toDelete);
+    }
+    List<ReviewCommentReconciler.Location> toCreate = reviewComments.toCreate();
+    LOG.debug("Review comments: {} to create, {} to update, {} to delete", toCreate.size(), toUpdate.size(), toDelete.size());
+    if (!toCreate.isEmpty() || !toUpdate.isEmpty()) {
+      createAndUpdateReviewComments(toCreate, toUpdate);
+    }
+    if (!toDelete.isEmpty()) {
+      deleteReviewComments(toDelete);
+    }
+  }
+
+  private void reconcileExistingReviewComments(List<GHPullRequestReviewComment> toUpdate, List<GHPullRequestReviewComment> toDelete) {
+    try {
+      GitHubRequestScheduler.Listing<GHPullRequestReviewComment> comments = list(pr.listReviewComments());
+      while (comments.hasNext()) {
+        GHPullRequestReviewComment comment = comments.next();
+        if (!myself.equals(comment.getUser().getLogin())) {
+          // Ignore comments from other users
+          continue;
+        }
+        String bodyHash = ReviewCommentReconciler.hash(comment.getBody());
+        switch (reviewComments.reconcile(comment.getPath(), comment.getPosition(), bodyHash)) {
+          case KEEP:
+            recordReviewComment(comment.getId(), comment.getPath(), comment.getPosition(), bodyHash);
+            break;
+          case UPDATE:
+            toUpdate.add(comment);
+            recordReviewComment(comment.getId(), comment.getPath(), comment.getPosition(),
+              ReviewCommentReconciler.hash(reviewComments.wantedBody(comment.getPath(), comment.getPosition())));
+            break;
+          default:
+            toDelete.add(comment);
         }
-        reviewCommentToBeDeletedById.remove(existingReview.getId());
-      } else {
-        pr.createReviewComment(body, pr.getHead().getSha(), fullpath, lineInPatch);
       }
     } catch (IOException e) {
-      throw new IllegalStateException("Unable to create or update review comment in file " + fullpath + " at line " + line, e);
+      throw new IllegalStateException("Unable to read the pull request review comments", e);
     }
+  }
 
+  private void createAndUpdateReviewComments(List<ReviewCommentReconciler.Location> toCreate, List<GHPullRequestReviewComment> toUpdate) {
+    try (GitHubRequestDispatcher dispatcher = scheduler.dispatcher("sonar-github-comments", config.requestThreads())) {
+      for (GHPullRequestReviewComment comment : toUpdate) {
+        String body = reviewComments.wantedBody(comment.getPath(), comment.getPosition());
+        dispatcher.submit("update of review comment in file " + comment.getPath() + " at position " + comment.getPosition(),
+          () -> scheduler.run(() -> comment.update(body)));
+      }
+      for (ReviewCommentReconciler.Location location : toCreate) {
+        String body = reviewComments.wantedBody(location.path(), location.position());
+        dispatcher.submit("review comment in file " + location.path() + " at position " + location.position(),
+          () -> {
+            GHPullRequestReviewComment created = scheduler.call(() -> pr.createReviewComment(body, pr.getHead().getSha(), location.path(), location.position()));
+            recordReviewComment(created.getId(), location.path(), location.position(), ReviewCommentReconciler.hash(body));
+          });
+      }
+      GitHubRequestDispatcher.Result result = dispatcher.awaitCompletion();
+      for (GitHubRequestDispatcher.Failure failure : result.failures()) {
+        LOG.debug("Unable to publish " + failure.description(), failure.cause());
+      }
+      if (!result.failures().isEmpty()) {
+        publishedState = null;
+      }
+      result.rethrowFailures();
+      reviewCommentCount += toCreate.size();
+    }
   }
 
-  public void deleteOutdatedComments() {
-    for (GHPullRequestReviewComment reviewToDelete : reviewCommentToBeDeletedById.values()) {
-      try {
-        reviewToDelete.delete();
-      } catch (IOException e) {
-        throw new IllegalStateException("Unable to delete review comment with id " + reviewToDelete.getId(), e);
+  private void deleteReviewComments(List<GHPullRequestReviewComment> toDelete) {
+    GitHubRequestDispatcher.Result result;
+    try (GitHubRequestDispatcher dispatcher = scheduler.dispatcher("sonar-github-deletions", config.requestThreads())) {
+      for (GHPullRequestReviewComment reviewToDelete : toDelete) {
+        dispatcher.submit("deletion of review comment with id " + reviewToDelete.getId(), () -> deleteReviewComment(reviewToDelete));
       }
+      result = dispatcher.awaitCompletion();
+    }
+    reviewCommentCount -= result.succeeded();
+    if (!result.failures().isEmpty()) {
+      // Remaining comments would not be part of the recorded state
+      publishedState = null;
+    }
+    for (GitHubRequestDispatcher.Failure failure : result.failures()) {
+      LOG.warn("Unable to perform " + failure.description() + ": " + failure.cause().getMessage());
+    }
+    if (result.failures().isEmpty()) {
+      LOG.info("Deleted {} outdated review comment(s)", result.succeeded());
+    } else {
+      LOG.warn("Deleted {} outdated review comment(s), {} could not be deleted", result.succeeded(), result.failures().size());
     }
   }
 
   public void createOrUpdateGlobalComments(@Nullable String markup) {
     try {
-      boolean found = findAndDeleteOthers(markup);
+      boolean found;
+      if (previousState != null && isUpToDate(previousState.globalCommentHashes(), markup)) {
+        LOG.debug("Previous global comment is up to date");
+        previousState.globalCommentHashes().forEach(this::recordGlobalComment);
+        found = markup != null;
+      } else {
+        found = findAndDeleteOthers(markup);
+      }
       if (markup != null && !found) {
         if (config.useReview()) {
           reviewBuilder.body(markup);
         } else {
-          pr.comment(markup);
+          GHIssueComment created = scheduler.call(() -> pr.comment(markup));
+          issueCommentCount++;
+          recordGlobalComment(created.getId(), ReviewCommentReconciler.hash(markup));
         }
       }
     } catch (IOException e) {
@@ -275,29 +441,79 @@ public class PullRequestFacade {
 
   private boolean findAndDeleteOthers(@Nullable String markup) throws IOException {
     boolean found = false;
-    for (GHIssueComment comment : pr.listComments()) {
-      if (myself.equals(comment.getUser().getLogin())) {
-        if (markup == null || found || !markup.equals(comment.getBody())) {
-          comment.delete();
-          continue;
-        }
-        if (markup.equals(comment.getBody())) {
-          found = true;
-        }
+    GitHubRequestScheduler.Listing<GHIssueComment> comments = list(pr.listComments());
+    while (comments.hasNext()) {
+      GHIssueComment comment = comments.next();
+      if (!myself.equals(comment.getUser().getLogin())) {
+        continue;
       }
+      if (markup == null || found || !markup.equals(comment.getBody())) {
+        scheduler.run(comment::delete);
+        issueCommentCount--;
+        continue;
+      }
+      found = true;
+      recordGlobalComment(comment.getId(), ReviewCommentReconciler.hash(markup));
     }
     return found;
   }
 
+  private void deleteReviewComment(GHPullRequestReviewComment comment) throws IOException {
+    try {
+      scheduler.runIdempotent(comment::delete);
+    } catch (FileNotFoundException e) {
+      LOG.debug("Review comment with id {} was already deleted", comment.getId());
+    }
+  }
+
+  private static boolean isUpToDate(Map<Long, String> globalCommentHashes, @Nullable String markup) {
+    if (markup == null) {
+      return globalCommentHashes.isEmpty();
+    }
+    return globalCommentHashes.size() == 1 && globalCommentHashes.containsValue(ReviewCommentReconciler.hash(markup));
+  }
+
+  private void recordReviewComment(long id, String path, int position, String bodyHash) {
+    PublishedCommentsState state = publishedState;
+    if (state != null) {
+      state.addReviewComment(id, path, position, bodyHash);
+    }
+  }
+
+  private void recordGlobalComment(long id, String bodyHash) {
+    PublishedCommentsState state = publishedState;
+    if (state != null) {
+      state.addGlobalComment(id, bodyHash);
+    }
+  }
+
+  /**
+   * Record the comments published by this analysis, so that the next analysis of the same head commit doesn't need to
+   * list them. Only called once all comments were successfully published.
+   */
+  public void storePublishedComments() {
+    PublishedCommentsState state = publishedState;
+    if (stateFile == null || state == null) {
+      return;
+    }
+    state.setCommentCounts(reviewCommentCount, issueCommentCount);
+    try {
+      state.store(stateFile);
+    } catch (IOException e) {
+      LOG.warn("Unable to store published comments in " + stateFile + ": " + e.getMessage());
+    }
+  }
+
   public void createOrUpdateSonarQubeStatus(GHCommitState status, String statusDescription, boolean hasNewIssue) {
     try {
       // Copy previous targetUrl in case it was set by an external system (like the CI job).
-      String targetUrl = null;
-      GHCommitStatus lastStatus = getCommitStatusForContext(pr, COMMIT_CONTEXT);
-      if (lastStatus != null) {
-        targetUrl = lastStatus.getTargetUrl();
+      // It is only looked up once, the next statuses of this analysis copy the same targetUrl.
+      if (commitStatusTargetUrl == null) {
+        GHCommitStatus lastStatus = getCommitStatusForContext(pr, COMMIT_CONTEXT);
+        commitStatusTargetUrl = Optional.ofNullable(lastStatus != null ? lastStatus.getTargetUrl() : null);
       }
-      ghRepo.createCommitStatus(pr.getHead().getSha(), status, targetUrl, statusDescription, COMMIT_CONTEXT);
+      String targetUrl = commitStatusTargetUrl.orElse(null);
+      scheduler.call(() -> ghRepo.createCommitStatus(pr.getHead().getSha(), status, targetUrl, statusDescription, COMMIT_CONTEXT));
 
       if (config.useReview()) {
         switch (status) {
@@ -329,13 +545,15 @@ public class PullRequestFacade {
 
   private void createReview(GHPullRequestReviewEvent event) throws IOException {
     eraseExistingReviews();
-    reviewBuilder.event(event).create();
+    scheduler.call(() -> reviewBuilder.event(event).create());
   }
 
   private void eraseExistingReviews() throws IOException {
-    for (GHPullRequestReview review : pr.listReviews()) {
+    GitHubRequestScheduler.Listing<GHPullRequestReview> reviews = list(pr.listReviews());
+    while (reviews.hasNext()) {
+      GHPullRequestReview review = reviews.next();
       if (myself.equals(review.getUser().getLogin()) && review.getState() == GHPullRequestReviewState.CHANGES_REQUESTED) {
-        review.dismiss("Re-analyzing");
+        scheduler.run(() -> review.dismiss("Re-analyzing"));
       }
     }
   }
@@ -357,17 +575,26 @@ public class PullRequestFacade {
 
   @CheckForNull
   GHCommitStatus getCommitStatusForContext(GHPullRequest pr, String context) {
-    List<GHCommitStatus> statuses;
     try {
-      statuses = pr.getRepository().listCommitStatuses(pr.getHead().getSha()).asList();
+      // Statuses are listed lazily, most recent first: stop at the first page holding the context
+      GitHubRequestScheduler.Listing<GHCommitStatus> statuses = list(pr.getRepository().listCommitStatuses(pr.getHead().getSha()));
+      while (statuses.hasNext()) {
+        GHCommitStatus status = statuses.next();
+        if (context.equals(status.getContext())) {
+          return status;
+        }
+      }
     } catch (IOException e) {
       throw new IllegalStateException("Unable to retrieve commit statuses.", e);
     }
-    for (GHCommitStatus status : statuses) {
-      if (context.equals(status.getContext())) {
-        return status;
-      }
-    }
     return null;
   }
+
+  /**
+   * Pages are only fetched, as scheduled requests, while the listing is iterated, so that consumers can stop as soon as
+   * they found what they need.
+   */
+  private <T> GitHubRequestScheduler.Listing<T> list(PagedIterable<T> iterable) {
+    return scheduler.list(iterable.withPageSize(config.pageSize()));
+  }
 }
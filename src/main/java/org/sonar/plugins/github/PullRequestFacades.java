@@ -34,10 +34,10 @@ public class PullRequestFacades {
     private final GitHubPluginConfiguration config;
     private Map<Integer, PullRequestFacade> pullRequestFacades = new HashMap();
 
-    public PullRequestFacades(GitHubPluginConfiguration config) {
+    public PullRequestFacades(GitHubPluginConfiguration config, GitHubSession session) {
         this.config = config;
         for (Integer pullRequestNumber : config.pullRequestNumbers()) {
-            pullRequestFacades.put(pullRequestNumber, new PullRequestFacade(config));
+            pullRequestFacades.put(pullRequestNumber, new PullRequestFacade(config, session));
         }
     }
 
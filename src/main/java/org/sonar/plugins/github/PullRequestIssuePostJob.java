@@ -19,11 +19,21 @@
  */
 package org.sonar.plugins.github;
 
-import java.util.Comparator;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.StreamSupport;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.apache.commons.lang.StringUtils;
 import org.kohsuke.github.GHCommitState;
 import org.sonar.api.batch.fs.InputComponent;
@@ -41,8 +51,6 @@ import org.sonar.api.utils.log.Loggers;
 public class PullRequestIssuePostJob implements PostJob {
   private static final Logger LOG = Loggers.get(PullRequestFacade.class);
 
-  private static final Comparator<PostJobIssue> ISSUE_COMPARATOR = new IssueComparator();
-
   private final PullRequestFacades pullRequestFacades;
   private final GitHubPluginConfiguration gitHubPluginConfiguration;
   private final MarkDownUtils markDownUtils;
@@ -62,36 +70,84 @@ public class PullRequestIssuePostJob implements PostJob {
 
   @Override
   public void execute(PostJobContext context) {
-    for(PullRequestFacade pullRequestFacade : pullRequestFacades.getPullRequestFacades().values()) {
-      GlobalReport report = new GlobalReport(markDownUtils, gitHubPluginConfiguration.tryReportIssuesInline());
-      try {
-        Map<InputFile, Map<Integer, StringBuilder>> commentsToBeAddedByLine = processIssues(report, pullRequestFacade, context.issues());
-
-        updateReviewComments(pullRequestFacade, commentsToBeAddedByLine);
-
-        pullRequestFacade.deleteOutdatedComments();
-
-        pullRequestFacade.createOrUpdateGlobalComments(report.hasNewIssue() ? report.formatForMarkdown() : null);
-
-        pullRequestFacade.createOrUpdateSonarQubeStatus(report.getStatus(),
-                                                        report.getStatusDescription(),
-                                                        report.hasNewIssue());
-      } catch (Exception e) {
-        LOG.error("SonarQube analysis failed to complete the review of this pull request", e);
-        pullRequestFacade.createOrUpdateSonarQubeStatus(GHCommitState.ERROR,
-                                                        StringUtils.abbreviate(
-                                                                "SonarQube analysis failed: " + e.getMessage(), 140),
-                                                        false);
+    Collection<PullRequestFacade> facades = pullRequestFacades.getPullRequestFacades().values();
+    // Without inline comments, only the global report needs the most severe issues and it selects them by itself
+    SharedIssueIndex issueIndex = new SharedIssueIndex(context, gitHubPluginConfiguration.tryReportIssuesInline());
+    int threads = Math.min(gitHubPluginConfiguration.publishThreads(), facades.size());
+    if (threads <= 1) {
+      for (PullRequestFacade pullRequestFacade : facades) {
+        publish(issueIndex, pullRequestFacade);
       }
+    } else {
+      publishConcurrently(issueIndex, facades, threads);
     }
+    LOG.debug("Rule links: {} reused from cache, {} built", markDownUtils.ruleLinkCacheHits(), markDownUtils.ruleLinkCacheMisses());
   }
 
-  private Map<InputFile, Map<Integer, StringBuilder>> processIssues(GlobalReport report, PullRequestFacade pullRequestFacade, Iterable<PostJobIssue> issues) {
-    Map<InputFile, Map<Integer, StringBuilder>> commentToBeAddedByFileAndByLine = new HashMap<>();
+  private void publishConcurrently(SharedIssueIndex issueIndex, Collection<PullRequestFacade> facades, int threads) {
+    ExecutorService executor = Executors.newFixedThreadPool(threads, new NamedDaemonThreadFactory("sonar-github-publisher"));
+    try {
+      List<Future<?>> publications = new ArrayList<>();
+      for (PullRequestFacade pullRequestFacade : facades) {
+        publications.add(executor.submit(() -> publish(issueIndex, pullRequestFacade)));
+      }
+      for (Future<?> publication : publications) {
+        awaitPublication(publication);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
 
-    StreamSupport.stream(issues.spliterator(), false)
-      .filter(PostJobIssue::isNew)
+  private static void awaitPublication(Future<?> publication) {
+    try {
+      publication.get();
+    } catch (ExecutionException e) {
+      // Each pull request is isolated: a failure to even set the ERROR status must not affect the others
+      LOG.error("Unable to publish SonarQube analysis on pull request", e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while publishing SonarQube analysis on pull requests", e);
+    }
+  }
+
+  private void publish(SharedIssueIndex issueIndex, PullRequestFacade pullRequestFacade) {
+    boolean tryReportIssuesInline = gitHubPluginConfiguration.tryReportIssuesInline();
+    GlobalReport report = new GlobalReport(markDownUtils, tryReportIssuesInline, GitHubPluginConfiguration.MAX_GLOBAL_ISSUES, !tryReportIssuesInline);
+    try {
       // SONARGITUB-13 Ignore issues on files not modified by the P/R
+      List<PostJobIssue> issues = issueIndex.get().issues(pullRequestFacade::hasFile);
+      Map<InputFile, Map<Integer, StringBuilder>> commentsToBeAddedByLine = processIssues(report, pullRequestFacade, issues);
+
+      updateReviewComments(pullRequestFacade, commentsToBeAddedByLine);
+
+      pullRequestFacade.publishReviewComments();
+
+      pullRequestFacade.createOrUpdateGlobalComments(report.hasNewIssue() ? report.formatForMarkdown() : null);
+
+      pullRequestFacade.storePublishedComments();
+
+      pullRequestFacade.createOrUpdateSonarQubeStatus(report.getStatus(),
+                                                      report.getStatusDescription(),
+                                                      report.hasNewIssue());
+    } catch (Exception e) {
+      LOG.error("SonarQube analysis failed to complete the review of this pull request", e);
+      pullRequestFacade.createOrUpdateSonarQubeStatus(GHCommitState.ERROR,
+                                                      StringUtils.abbreviate(
+                                                              "SonarQube analysis failed: " + e.getMessage(), 140),
+                                                      false);
+    }
+  }
+
+  /**
+   * @param issues new issues, sorted when inline comments are enabled
+   */
+  private Map<InputFile, Map<Integer, StringBuilder>> processIssues(GlobalReport report, PullRequestFacade pullRequestFacade, List<PostJobIssue> issues) {
+    Map<InputFile, Map<Integer, StringBuilder>> commentToBeAddedByFileAndByLine = new HashMap<>();
+
+    // Filtering and formatting can run in parallel, the ordered collect keeps the result identical to the sequential mode
+    Stream<PostJobIssue> stream = gitHubPluginConfiguration.parallelIssueProcessing() ? issues.parallelStream() : issues.stream();
+    List<PreparedIssue> preparedIssues = stream
       .filter(i -> {
         InputComponent inputComponent = i.inputComponent();
           boolean result = keepIssue(pullRequestFacade, i, inputComponent);
@@ -108,8 +164,11 @@ public class PullRequestIssuePostJob implements PostJob {
           }
           return result;
       })
-      .sorted(ISSUE_COMPARATOR)
-      .forEach(i -> processIssue(report, pullRequestFacade, commentToBeAddedByFileAndByLine, i));
+      .map(i -> prepareIssue(pullRequestFacade, i))
+      .collect(Collectors.toList());
+    for (PreparedIssue preparedIssue : preparedIssues) {
+      processIssue(report, commentToBeAddedByFileAndByLine, preparedIssue);
+    }
     return commentToBeAddedByFileAndByLine;
   }
 
@@ -143,44 +202,80 @@ public class PullRequestIssuePostJob implements PostJob {
     }
   }
 
-  private void processIssue(GlobalReport report, PullRequestFacade pullRequestFacade, Map<InputFile, Map<Integer, StringBuilder>> commentToBeAddedByFileAndByLine, PostJobIssue issue) {
-    boolean reportedInline = false;
+  private PreparedIssue prepareIssue(PullRequestFacade pullRequestFacade, PostJobIssue issue) {
+    String inlineComment = null;
     InputComponent inputComponent = issue.inputComponent();
     if (gitHubPluginConfiguration.tryReportIssuesInline() && inputComponent != null && inputComponent.isFile()) {
-      reportedInline = tryReportInline(pullRequestFacade, commentToBeAddedByFileAndByLine, issue, (InputFile) inputComponent);
+      inlineComment = tryReportInline(pullRequestFacade, issue, (InputFile) inputComponent);
     }
-    LOG.debug("reportedInLine: {}, inputComponent: {}, line: {}, message: {}", reportedInline, inputComponent, issue.line(), issue.message());
-    report.process(issue, pullRequestFacade.getGithubUrl(inputComponent, issue.line()), reportedInline);
+    return new PreparedIssue(issue, inlineComment, pullRequestFacade.getGithubUrl(inputComponent, issue.line()));
   }
 
-  private boolean tryReportInline(PullRequestFacade pullRequestFacade, Map<InputFile, Map<Integer, StringBuilder>> commentToBeAddedByFileAndByLine, PostJobIssue issue, InputFile inputFile) {
+  @CheckForNull
+  private String tryReportInline(PullRequestFacade pullRequestFacade, PostJobIssue issue, InputFile inputFile) {
     Integer lineOrNull = issue.line();
-    if (lineOrNull != null) {
-      int line = lineOrNull.intValue();
-      if (pullRequestFacade.hasFileLine(inputFile, line)) {
-        String message = issue.message();
-        String ruleKey = issue.ruleKey().toString();
-        if (!commentToBeAddedByFileAndByLine.containsKey(inputFile)) {
-          commentToBeAddedByFileAndByLine.put(inputFile, new HashMap<Integer, StringBuilder>());
-        }
-        Map<Integer, StringBuilder> commentsByLine = commentToBeAddedByFileAndByLine.get(inputFile);
-        if (!commentsByLine.containsKey(line)) {
-          commentsByLine.put(line, new StringBuilder());
-        }
-        commentsByLine.get(line).append(markDownUtils.inlineIssue(issue.severity(), message, ruleKey)).append("\n");
-        return true;
-      }
+    if (lineOrNull != null && pullRequestFacade.hasFileLine(inputFile, lineOrNull.intValue())) {
+      return markDownUtils.inlineIssue(issue.severity(), issue.message(), issue.ruleKey().toString());
     }
-    return false;
+    return null;
   }
 
-  private void updateReviewComments(PullRequestFacade pullRequestFacade, Map<InputFile, Map<Integer, StringBuilder>> commentsToBeAddedByLine) {
+  private static void processIssue(GlobalReport report, Map<InputFile, Map<Integer, StringBuilder>> commentToBeAddedByFileAndByLine, PreparedIssue preparedIssue) {
+    PostJobIssue issue = preparedIssue.issue;
+    boolean reportedInline = preparedIssue.inlineComment != null;
+    if (reportedInline) {
+      commentToBeAddedByFileAndByLine
+        .computeIfAbsent((InputFile) issue.inputComponent(), f -> new HashMap<>())
+        .computeIfAbsent(issue.line(), l -> new StringBuilder())
+        .append(preparedIssue.inlineComment).append("\n");
+    }
+    LOG.debug("reportedInLine: {}, inputComponent: {}, line: {}, message: {}", reportedInline, issue.inputComponent(), issue.line(), issue.message());
+    report.process(issue, preparedIssue.gitHubUrl, reportedInline);
+  }
+
+  private static void updateReviewComments(PullRequestFacade pullRequestFacade, Map<InputFile, Map<Integer, StringBuilder>> commentsToBeAddedByLine) {
     for (Map.Entry<InputFile, Map<Integer, StringBuilder>> entry : commentsToBeAddedByLine.entrySet()) {
       for (Map.Entry<Integer, StringBuilder> entryPerLine : entry.getValue().entrySet()) {
-        String body = entryPerLine.getValue().toString();
-        pullRequestFacade.createOrUpdateReviewComment(entry.getKey(), entryPerLine.getKey(), body);
+        pullRequestFacade.createOrUpdateReviewComment(entry.getKey(), entryPerLine.getKey(), entryPerLine.getValue().toString());
       }
     }
   }
 
+  /**
+   * Issues are loaded and indexed once, by the first pull request to be published.
+   */
+  private static final class SharedIssueIndex {
+    private final PostJobContext context;
+    private final boolean sort;
+    private IssueIndex index;
+
+    SharedIssueIndex(PostJobContext context, boolean sort) {
+      this.context = context;
+      this.sort = sort;
+    }
+
+    synchronized IssueIndex get() {
+      if (index == null) {
+        index = IssueIndex.of(context.issues(), sort);
+      }
+      return index;
+    }
+  }
+
+  /**
+   * Issue kept for the pull request, with what can be computed independently of the other issues.
+   */
+  private static final class PreparedIssue {
+    private final PostJobIssue issue;
+    @Nullable
+    private final String inlineComment;
+    @Nullable
+    private final URL gitHubUrl;
+
+    PreparedIssue(PostJobIssue issue, @Nullable String inlineComment, @Nullable URL gitHubUrl) {
+      this.issue = issue;
+      this.inlineComment = inlineComment;
+      this.gitHubUrl = gitHubUrl;
+    }
+  }
 }
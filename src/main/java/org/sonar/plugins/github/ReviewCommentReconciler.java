@@ -0,0 +1,176 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.CheckForNull;
+
+/**
+ * Computes the minimal set of changes between the review comments wanted by this analysis and the ones previously published.
+ * Comments are identified by their location (path, position) and compared by the hash of their body, so that existing
+ * comments can be reconciled one at a time while they are listed.
+ */
+final class ReviewCommentReconciler {
+
+  enum Action {
+    /**
+     * Existing comment already has the wanted body
+     */
+    KEEP,
+    /**
+     * Existing comment is at a wanted location, with a different body
+     */
+    UPDATE,
+    /**
+     * Existing comment is not wanted anymore (or is a duplicate of another one)
+     */
+    DELETE
+  }
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final Map<Location, String> wantedBodies = new ConcurrentHashMap<>();
+  private final Set<Location> reconciled = new HashSet<>();
+
+  /**
+   * Register a comment of this analysis. Can be called concurrently.
+   */
+  void want(String path, int position, String body) {
+    wantedBodies.put(new Location(path, position), body);
+  }
+
+  /**
+   * @return body wanted at the location, if any
+   */
+  @CheckForNull
+  String wantedBody(String path, int position) {
+    return wantedBodies.get(new Location(path, position));
+  }
+
+  /**
+   * Decide what to do with an existing comment. The first existing comment of a wanted location is kept or updated,
+   * the others are deleted.
+   */
+  synchronized Action reconcile(String path, int position, String bodyHash) {
+    Location location = new Location(path, position);
+    String wantedBody = wantedBodies.get(location);
+    if (wantedBody == null || !reconciled.add(location)) {
+      return Action.DELETE;
+    }
+    return hash(wantedBody).equals(bodyHash) ? Action.KEEP : Action.UPDATE;
+  }
+
+  /**
+   * Reconcile a snapshot of the existing comments at once, when all of them can be kept as is.
+   * @return false, without reconciling any comment, when one of them would have to be updated or deleted
+   */
+  synchronized boolean keepAll(Map<Location, String> bodyHashByLocation) {
+    for (Map.Entry<Location, String> entry : bodyHashByLocation.entrySet()) {
+      String wantedBody = wantedBodies.get(entry.getKey());
+      if (wantedBody == null || reconciled.contains(entry.getKey()) || !hash(wantedBody).equals(entry.getValue())) {
+        return false;
+      }
+    }
+    reconciled.addAll(bodyHashByLocation.keySet());
+    return true;
+  }
+
+  /**
+   * @return wanted comments that don't match any existing comment, ordered by path and position
+   */
+  synchronized List<Location> toCreate() {
+    List<Location> result = new ArrayList<>();
+    for (Location location : wantedBodies.keySet()) {
+      if (!reconciled.contains(location)) {
+        result.add(location);
+      }
+    }
+    result.sort(Comparator.comparing(Location::path).thenComparingInt(Location::position));
+    return result;
+  }
+
+  /**
+   * @return SHA-256 of the UTF-8 body, in hexadecimal
+   */
+  static String hash(String body) {
+    byte[] digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+    char[] hex = new char[digest.length * 2];
+    for (int i = 0; i < digest.length; i++) {
+      hex[2 * i] = HEX[(digest[i] >> 4) & 0xF];
+      hex[2 * i + 1] = HEX[digest[i] & 0xF];
+    }
+    return new String(hex);
+  }
+
+  static final class Location {
+    private final String path;
+    private final int position;
+
+    Location(String path, int position) {
+      this.path = path;
+      this.position = position;
+    }
+
+    String path() {
+      return path;
+    }
+
+    int position() {
+      return position;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Location other = (Location) o;
+      return position == other.position && path.equals(other.path);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(path, position);
+    }
+
+    @Override
+    public String toString() {
+      return path + ":" + position;
+    }
+  }
+}
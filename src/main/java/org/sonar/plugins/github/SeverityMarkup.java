@@ -0,0 +1,98 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import org.sonar.api.batch.rule.Severity;
+
+/**
+ * Markdown fragments of a severity. There are only a few severities, so all fragments are computed once.
+ */
+final class SeverityMarkup {
+
+  private static final String IMAGES_ROOT_URL = "https://sonarsource.github.io/sonar-github/";
+  private static final Map<Severity, SeverityMarkup> MARKUP_BY_SEVERITY;
+
+  static {
+    Map<Severity, SeverityMarkup> markup = new EnumMap<>(Severity.class);
+    for (Severity severity : Severity.values()) {
+      markup.put(severity, new SeverityMarkup(severity));
+    }
+    MARKUP_BY_SEVERITY = Collections.unmodifiableMap(markup);
+  }
+
+  private final String lowerCaseName;
+  private final String imageUrl;
+  private final String imageLink;
+  private final String imageLinkReference;
+  private final String imageLinkDefinition;
+
+  private SeverityMarkup(Severity severity) {
+    String name = severity.name();
+    this.lowerCaseName = name.toLowerCase(Locale.ENGLISH);
+    this.imageUrl = IMAGES_ROOT_URL + "severity-" + lowerCaseName + ".png";
+    this.imageLink = "![" + name + "](" + imageUrl + " 'Severity: " + name + "')";
+    this.imageLinkReference = "![" + name + "][" + name + "]";
+    this.imageLinkDefinition = "[" + name + "]: " + imageUrl + " 'Severity: " + name + "'";
+  }
+
+  static SeverityMarkup of(Severity severity) {
+    return MARKUP_BY_SEVERITY.get(severity);
+  }
+
+  static String imagesRootUrl() {
+    return IMAGES_ROOT_URL;
+  }
+
+  /**
+   * @return severity name, in lower case
+   */
+  String lowerCaseName() {
+    return lowerCaseName;
+  }
+
+  String imageUrl() {
+    return imageUrl;
+  }
+
+  /**
+   * @return inline image, such as {@code ![BLOCKER](url 'Severity: BLOCKER')}
+   */
+  String imageLink() {
+    return imageLink;
+  }
+
+  /**
+   * @return reference style image, such as {@code ![BLOCKER][BLOCKER]}
+   */
+  String imageLinkReference() {
+    return imageLinkReference;
+  }
+
+  /**
+   * @return definition of the reference used by {@link #imageLinkReference()}
+   */
+  String imageLinkDefinition() {
+    return imageLinkDefinition;
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.postjob.issue.PostJobIssue;
+import org.sonar.api.batch.rule.Severity;
+
+/**
+ * Markdown report written in a single pass to an {@link Appendable}. Severity images use reference links, whose
+ * definitions only depend on the severities used: they are written by {@link #finish()}.
+ */
+public class StreamingMarkDownReportBuilder implements ReportBuilder {
+
+  // note: link definitions are sorted by name for consistent user experience and testability
+  private static final Severity[] SEVERITIES_BY_NAME = Arrays.stream(Severity.values())
+    .sorted(Comparator.comparing(Severity::name))
+    .toArray(Severity[]::new);
+
+  private final MarkDownUtils markDownUtils;
+  private final Appendable out;
+  private final Set<Severity> usedSeverities = EnumSet.noneOf(Severity.class);
+  private final List<PostJobIssue> extraIssues = new ArrayList<>();
+  private final List<URL> extraIssueUrls = new ArrayList<>();
+
+  StreamingMarkDownReportBuilder(MarkDownUtils markDownUtils, Appendable out) {
+    this.markDownUtils = markDownUtils;
+    this.out = out;
+  }
+
+  @Override
+  public ReportBuilder append(Object o) {
+    return write(String.valueOf(o));
+  }
+
+  @Override
+  public ReportBuilder append(Severity severity) {
+    usedSeverities.add(severity);
+    return write(SeverityMarkup.of(severity).imageLinkReference());
+  }
+
+  @Override
+  public ReportBuilder registerExtraIssue(PostJobIssue issue, @Nullable URL gitHubUrl) {
+    extraIssues.add(issue);
+    extraIssueUrls.add(gitHubUrl);
+    return this;
+  }
+
+  @Override
+  public ReportBuilder appendExtraIssues() {
+    // need a blank line before lists to be displayed correctly
+    write("\n");
+    for (int i = 0; i < extraIssues.size(); i++) {
+      PostJobIssue issue = extraIssues.get(i);
+      usedSeverities.add(issue.severity());
+      write("1. ").write(SeverityMarkup.of(issue.severity()).imageLinkReference()).write(" ")
+        .write(markDownUtils.globalIssue(issue.message(), issue.ruleKey().toString(), extraIssueUrls.get(i), issue.componentKey()))
+        .write("\n");
+    }
+    return this;
+  }
+
+  /**
+   * Write the definitions of the links used so far. Nothing should be appended afterwards.
+   */
+  public void finish() {
+    if (usedSeverities.isEmpty()) {
+      return;
+    }
+    write("\n");
+    boolean first = true;
+    for (Severity severity : SEVERITIES_BY_NAME) {
+      if (usedSeverities.contains(severity)) {
+        if (!first) {
+          write("\n");
+        }
+        write(SeverityMarkup.of(severity).imageLinkDefinition());
+        first = false;
+      }
+    }
+  }
+
+  private StreamingMarkDownReportBuilder write(CharSequence text) {
+    try {
+      out.append(text);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to write report", e);
+    }
+    return this;
+  }
+}
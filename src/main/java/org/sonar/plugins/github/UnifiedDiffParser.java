@@ -0,0 +1,185 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+/**
+ * Single pass parser of the unified diff patches returned by GitHub for each file of a pull request.
+ * It scans characters in place, without regular expressions nor per-line allocation.
+ * <p>
+ * Lines are split like {@link java.io.BufferedReader#readLine()} does ('\n', '\r' or "\r\n"). The position of a line is
+ * its index in the patch, hunk headers included, which is what GitHub expects for review comments.
+ *
+ * @see <a href="http://en.wikipedia.org/wiki/Diff_utility#Unified_format">Unified format</a>
+ */
+final class UnifiedDiffParser {
+
+  @FunctionalInterface
+  interface PositionConsumer {
+    void accept(int line, int position);
+  }
+
+  private UnifiedDiffParser() {
+    // only static methods
+  }
+
+  /**
+   * Report the position of each added line, and of each unchanged line unless {@code ignoreUnchangedLines}.
+   *
+   * @throws IllegalStateException if a hunk header is malformed
+   */
+  static void parse(String patch, boolean ignoreUnchangedLines, PositionConsumer consumer) {
+    int length = patch.length();
+    int currentLine = -1;
+    int position = 0;
+    int start = 0;
+    while (start < length) {
+      int end = start;
+      while (end < length && patch.charAt(end) != '\n' && patch.charAt(end) != '\r') {
+        end++;
+      }
+      if (end > start) {
+        char first = patch.charAt(start);
+        if (first == '@') {
+          currentLine = parseHunkHeader(patch, start, end);
+        } else if (first == '+' || first == ' ') {
+          // Count added and unmodified lines, removed lines ('-') and "\ No newline at end of file" are skipped
+          if (first == '+' || !ignoreUnchangedLines) {
+            consumer.accept(currentLine, position);
+          }
+          currentLine++;
+        }
+      }
+      position++;
+      start = end + 1;
+      if (end + 1 < length && patch.charAt(end) == '\r' && patch.charAt(end + 1) == '\n') {
+        start++;
+      }
+    }
+  }
+
+  /**
+   * Parse "@@ -l[,s] +l[,s] @@ optional section heading" and return the first line of the hunk in the new file.
+   */
+  private static int parseHunkHeader(String patch, int start, int end) {
+    int i = expect(patch, start, start, end, "@@");
+    i = expectWhiteSpace(patch, start, i, end);
+    i = expect(patch, start, i, end, '-');
+    i = skipRange(patch, start, i, end);
+    i = expectWhiteSpace(patch, start, i, end);
+    i = expect(patch, start, i, end, '+');
+    int lineStart = i;
+    i = skipDigits(patch, start, i, end);
+    long newLine = 0;
+    for (int j = lineStart; j < i; j++) {
+      newLine = newLine * 10 + (patch.charAt(j) - '0');
+      if (newLine > Integer.MAX_VALUE) {
+        throw error(patch, start, end, lineStart, "line number is too large");
+      }
+    }
+    i = skipOptionalCount(patch, start, i, end);
+    i = expectWhiteSpace(patch, start, i, end);
+    i = expect(patch, start, i, end, "@@");
+    for (; i < end; i++) {
+      char c = patch.charAt(i);
+      if (c == '\u0085' || c == '\u2028' || c == '\u2029') {
+        throw error(patch, start, end, i, "unexpected line separator in section heading");
+      }
+    }
+    return (int) newLine;
+  }
+
+  private static int skipRange(String patch, int start, int i, int end) {
+    return skipOptionalCount(patch, start, skipDigits(patch, start, i, end), end);
+  }
+
+  private static int skipOptionalCount(String patch, int start, int i, int end) {
+    if (i < end && patch.charAt(i) == ',') {
+      return skipDigits(patch, start, i + 1, end);
+    }
+    return i;
+  }
+
+  private static int skipDigits(String patch, int start, int i, int end) {
+    int j = i;
+    while (j < end && isDigit(patch.charAt(j))) {
+      j++;
+    }
+    if (j == i) {
+      throw error(patch, start, end, i, "expected a number");
+    }
+    return j;
+  }
+
+  private static int expect(String patch, int start, int i, int end, String expected) {
+    int j = i;
+    for (int k = 0; k < expected.length(); k++) {
+      j = expect(patch, start, j, end, expected.charAt(k));
+    }
+    return j;
+  }
+
+  private static int expect(String patch, int start, int i, int end, char expected) {
+    if (i >= end || patch.charAt(i) != expected) {
+      throw error(patch, start, end, i, "expected '" + expected + "'");
+    }
+    return i + 1;
+  }
+
+  private static int expectWhiteSpace(String patch, int start, int i, int end) {
+    if (i >= end || !isWhiteSpace(patch.charAt(i))) {
+      throw error(patch, start, end, i, "expected a white space");
+    }
+    return i + 1;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  /**
+   * Characters having the Unicode White_Space property, as matched by {@code \p{IsWhite_Space}}.
+   */
+  private static boolean isWhiteSpace(char c) {
+    switch (c) {
+      case '\t':
+      case '\n':
+      case '\u000B':
+      case '\f':
+      case '\r':
+      case ' ':
+      case '\u0085':
+      case '\u00A0':
+      case '\u1680':
+      case '\u2028':
+      case '\u2029':
+      case '\u202F':
+      case '\u205F':
+      case '\u3000':
+        return true;
+      default:
+        return c >= '\u2000' && c <= '\u200A';
+    }
+  }
+
+  private static IllegalStateException error(String patch, int start, int end, int index, String reason) {
+    return new IllegalStateException("Unable to parse patch line " + patch.substring(start, end) + " (" + reason + " at column " + (index - start + 1)
+      + ")\nFull patch: \n" + patch);
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URL;
+import javax.annotation.Nullable;
+import org.kohsuke.github.HttpConnector;
+
+/**
+ * Send github-api requests through the JDK HttpURLConnection, with explicit timeouts.
+ */
+class UrlConnectionConnector implements HttpConnector {
+
+  private final Proxy proxy;
+  private final int connectTimeoutMs;
+  private final int readTimeoutMs;
+
+  UrlConnectionConnector(@Nullable Proxy proxy, int connectTimeoutMs, int readTimeoutMs) {
+    this.proxy = proxy;
+    this.connectTimeoutMs = connectTimeoutMs;
+    this.readTimeoutMs = readTimeoutMs;
+  }
+
+  @Override
+  public HttpURLConnection connect(URL url) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) (proxy != null ? url.openConnection(proxy) : url.openConnection());
+    connection.setConnectTimeout(connectTimeoutMs);
+    connection.setReadTimeout(readTimeoutMs);
+    return connection;
+  }
+}
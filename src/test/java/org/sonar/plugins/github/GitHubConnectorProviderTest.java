@@ -0,0 +1,88 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.config.PropertyDefinitions;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.utils.MessageException;
+import org.sonar.api.utils.System2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GitHubConnectorProviderTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private MapSettings settings;
+  private GitHubConnectorProvider provider;
+
+  @Before
+  public void prepare() {
+    settings = new MapSettings(new PropertyDefinitions(GitHubPlugin.class));
+    provider = new GitHubConnectorProvider(new GitHubPluginConfiguration(settings, new System2()));
+  }
+
+  @Test
+  public void should_use_url_connection_with_timeouts_by_default() throws Exception {
+    settings.setProperty(GitHubPlugin.GITHUB_CONNECT_TIMEOUT, "1234");
+    settings.setProperty(GitHubPlugin.GITHUB_READ_TIMEOUT, "5678");
+
+    assertThat(provider.connector()).isInstanceOf(UrlConnectionConnector.class);
+    assertThat(provider.connector()).isSameAs(provider.connector());
+
+    HttpURLConnection connection = provider.connector().connect(new URL("http://localhost/repos"));
+    assertThat(connection.getConnectTimeout()).isEqualTo(1234);
+    assertThat(connection.getReadTimeout()).isEqualTo(5678);
+  }
+
+  @Test
+  public void should_use_okhttp() {
+    settings.setProperty(GitHubPlugin.GITHUB_HTTP_CLIENT, "OkHttp");
+    assertThat(provider.connector()).isInstanceOf(OkHttpConnector.class);
+  }
+
+  @Test
+  public void should_use_okhttp_when_cache_is_enabled() throws Exception {
+    settings.setProperty(GitHubPlugin.GITHUB_CACHE_DIRECTORY, temp.newFolder().getAbsolutePath());
+    assertThat(provider.connector()).isInstanceOf(OkHttpConnector.class);
+    assertThat(provider.connector()).isSameAs(provider.connector());
+  }
+
+  @Test
+  public void should_fail_on_unknown_client() {
+    settings.setProperty(GitHubPlugin.GITHUB_HTTP_CLIENT, "curl");
+
+    thrown.expect(MessageException.class);
+    thrown.expectMessage("Unsupported value 'curl' for property 'sonar.github.httpClient'");
+
+    provider.connector();
+  }
+}
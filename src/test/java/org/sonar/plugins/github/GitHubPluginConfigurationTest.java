@@ -19,6 +19,7 @@
  */
 package org.sonar.plugins.github;
 
+import java.io.File;
 import java.net.Proxy;
 import org.junit.Before;
 import org.junit.Rule;
@@ -117,6 +118,27 @@ public class GitHubPluginConfigurationTest {
     assertThat(config.tryReportIssuesInline()).isTrue();
     settings.setProperty(GitHubPlugin.GITHUB_DISABLE_INLINE_COMMENTS, "true");
     assertThat(config.tryReportIssuesInline()).isFalse();
+
+    assertThat(config.publishThreads()).isEqualTo(GitHubPluginConfiguration.DEFAULT_PUBLISH_THREADS);
+    settings.setProperty(GitHubPlugin.GITHUB_PUBLISH_THREADS, "2");
+    assertThat(config.publishThreads()).isEqualTo(2);
+    settings.setProperty(GitHubPlugin.GITHUB_PUBLISH_THREADS, "0");
+    assertThat(config.publishThreads()).isEqualTo(GitHubPluginConfiguration.DEFAULT_PUBLISH_THREADS);
+
+    assertThat(config.cacheDirectory()).isNull();
+    settings.setProperty(GitHubPlugin.GITHUB_CACHE_DIRECTORY, "target/github-cache");
+    assertThat(config.cacheDirectory()).isEqualTo(new File("target/github-cache"));
+    assertThat(config.cacheMaxSizeBytes()).isEqualTo(50L * 1024 * 1024);
+
+    assertThat(config.stateDirectory()).isNull();
+    settings.setProperty(GitHubPlugin.GITHUB_STATE_DIRECTORY, "target/github-state");
+    assertThat(config.stateDirectory()).isEqualTo(new File("target/github-state"));
+
+    assertThat(config.pageSize()).isEqualTo(GitHubPluginConfiguration.MAX_PAGE_SIZE);
+    settings.setProperty(GitHubPlugin.GITHUB_PAGE_SIZE, "30");
+    assertThat(config.pageSize()).isEqualTo(30);
+    settings.setProperty(GitHubPlugin.GITHUB_PAGE_SIZE, "500");
+    assertThat(config.pageSize()).isEqualTo(GitHubPluginConfiguration.MAX_PAGE_SIZE);
   }
 
   @Test
@@ -0,0 +1,127 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GitHubRequestDispatcherTest {
+
+  @Test
+  public void should_run_all_requests() {
+    AtomicInteger counter = new AtomicInteger();
+    try (GitHubRequestDispatcher dispatcher = new GitHubRequestDispatcher("test", 3, 5)) {
+      for (int i = 0; i < 50; i++) {
+        dispatcher.submit("request " + i, counter::incrementAndGet);
+      }
+      GitHubRequestDispatcher.Result result = dispatcher.awaitCompletion();
+      assertThat(result.succeeded()).isEqualTo(50);
+      assertThat(result.failures()).isEmpty();
+    }
+    assertThat(counter.get()).isEqualTo(50);
+  }
+
+  @Test
+  public void should_collect_failures_in_submission_order() throws Exception {
+    CountDownLatch firstCanFail = new CountDownLatch(1);
+    try (GitHubRequestDispatcher dispatcher = new GitHubRequestDispatcher("test", 2, 2)) {
+      dispatcher.submit("first", () -> {
+        // make sure the first failure is not the first to complete
+        firstCanFail.await(10, TimeUnit.SECONDS);
+        throw new IOException("first failure");
+      });
+      dispatcher.submit("second", () -> {
+        try {
+          throw new IllegalStateException("second failure");
+        } finally {
+          firstCanFail.countDown();
+        }
+      });
+      dispatcher.submit("third", () -> {
+      });
+
+      GitHubRequestDispatcher.Result result = dispatcher.awaitCompletion();
+      assertThat(result.succeeded()).isEqualTo(1);
+      assertThat(result.failures()).hasSize(2);
+      assertThat(result.failures().get(0).description()).isEqualTo("first");
+      assertThat(result.failures().get(1).description()).isEqualTo("second");
+
+      try {
+        result.rethrowFailures();
+        fail();
+      } catch (IllegalStateException e) {
+        assertThat(e).hasMessage("Unable to perform first");
+        assertThat(e.getCause()).hasMessage("first failure");
+        assertThat(e.getSuppressed()).hasSize(1);
+        assertThat(e.getSuppressed()[0]).hasMessage("second failure");
+      }
+    }
+  }
+
+  @Test
+  public void should_limit_requests_in_flight() {
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    try (GitHubRequestDispatcher dispatcher = new GitHubRequestDispatcher("test", 8, 2)) {
+      for (int i = 0; i < 20; i++) {
+        dispatcher.submit("request " + i, () -> {
+          int current = running.incrementAndGet();
+          maxRunning.accumulateAndGet(current, Math::max);
+          Thread.sleep(5);
+          running.decrementAndGet();
+        });
+      }
+      assertThat(dispatcher.awaitCompletion().succeeded()).isEqualTo(20);
+    }
+    assertThat(maxRunning.get()).isLessThanOrEqualTo(2);
+  }
+
+  @Test
+  public void should_share_requests_in_flight_between_dispatchers_of_a_scheduler() {
+    GitHubPluginConfiguration config = mock(GitHubPluginConfiguration.class);
+    when(config.maxRequestsInFlight()).thenReturn(2);
+    GitHubRequestScheduler scheduler = new GitHubRequestScheduler(config);
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    try (GitHubRequestDispatcher first = scheduler.dispatcher("first", 8);
+      GitHubRequestDispatcher second = scheduler.dispatcher("second", 8)) {
+      for (int i = 0; i < 20; i++) {
+        GitHubRequestDispatcher dispatcher = i % 2 == 0 ? first : second;
+        dispatcher.submit("request " + i, () -> {
+          int current = running.incrementAndGet();
+          maxRunning.accumulateAndGet(current, Math::max);
+          Thread.sleep(5);
+          running.decrementAndGet();
+        });
+      }
+      assertThat(first.awaitCompletion().succeeded()).isEqualTo(10);
+      assertThat(second.awaitCompletion().succeeded()).isEqualTo(10);
+    }
+    assertThat(maxRunning.get()).isLessThanOrEqualTo(2);
+  }
+}
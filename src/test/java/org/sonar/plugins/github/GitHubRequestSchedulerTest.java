@@ -0,0 +1,343 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.kohsuke.github.HttpException;
+import org.kohsuke.github.PagedIterable;
+import org.kohsuke.github.PagedIterator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class GitHubRequestSchedulerTest {
+
+  private static class FakeClock implements GitHubRequestScheduler.Clock {
+    private long now = 1_000_000;
+
+    @Override
+    public long currentTimeMillis() {
+      return now;
+    }
+
+    @Override
+    public void sleep(long millis) {
+      now += millis;
+    }
+  }
+
+  private final FakeClock clock = new FakeClock();
+
+  @Test
+  public void should_allow_burst_then_pace_requests() {
+    GitHubRequestScheduler scheduler = new GitHubRequestScheduler(5, clock);
+    long start = clock.now;
+    for (int i = 0; i < 5; i++) {
+      scheduler.acquire();
+    }
+    assertThat(clock.now).isEqualTo(start);
+
+    for (int i = 0; i < 5; i++) {
+      scheduler.acquire();
+    }
+    assertThat(clock.now - start).isEqualTo(1_000);
+  }
+
+  @Test
+  public void should_not_pace_when_disabled() {
+    GitHubRequestScheduler scheduler = new GitHubRequestScheduler(0, clock);
+    long start = clock.now;
+    for (int i = 0; i < 1000; i++) {
+      scheduler.acquire();
+    }
+    assertThat(clock.now).isEqualTo(start);
+  }
+
+  @Test
+  public void should_keep_configured_rate_while_budget_is_healthy() {
+    GitHubRequestScheduler scheduler = new GitHubRequestScheduler(10, clock);
+    // Spreading this budget over the hour would allow less than 1.4 request per second
+    scheduler.updateRateLimit(4_999, 5_000, clock.now + 3_600_000);
+    assertThat(scheduler.currentRate()).isEqualTo(10.0);
+
+    scheduler.updateRateLimit(500, 5_000, clock.now + 3_600_000);
+    assertThat(scheduler.currentRate()).isEqualTo(10.0);
+
+    // Limit unknown, only the absolute threshold applies
+    scheduler.updateRateLimit(GitHubRequestScheduler.LOW_BUDGET_REQUESTS, 0, clock.now + 3_600_000);
+    assertThat(scheduler.currentRate()).isEqualTo(10.0);
+  }
+
+  @Test
+  public void should_slow_down_when_remaining_budget_is_low() {
+    GitHubRequestScheduler scheduler = new GitHubRequestScheduler(10, clock);
+    scheduler.updateRateLimit(36, 5_000, clock.now + 3_600_000);
+    assertThat(scheduler.currentRate()).isEqualTo(0.1);
+
+    scheduler.updateRateLimit(90, 60, clock.now + 60_000);
+    assertThat(scheduler.currentRate()).isEqualTo(1.5);
+
+    scheduler.updateRateLimit(400, 5_000, clock.now + 10_000);
+    assertThat(scheduler.currentRate()).isEqualTo(10.0);
+
+    // Back to the configured rate once the budget is healthy again
+    scheduler.updateRateLimit(36, 5_000, clock.now + 3_600_000);
+    scheduler.updateRateLimit(5_000, 5_000, clock.now + 3_600_000);
+    assertThat(scheduler.currentRate()).isEqualTo(10.0);
+  }
+
+  @Test
+  public void should_pause_until_reset_when_budget_is_exhausted() {
+    GitHubRequestScheduler scheduler = new GitHubRequestScheduler(0, clock);
+    long reset = clock.now + 42_000;
+    scheduler.updateRateLimit(0, 5_000, reset);
+    scheduler.acquire();
+    assertThat(clock.now).isEqualTo(reset);
+  }
+
+  @Test
+  public void should_back_off_and_retry_when_rate_limited() throws IOException {
+    GitHubRequestScheduler scheduler = new GitHubRequestScheduler(0, clock);
+    HttpException tooManyRequests = mock(HttpException.class);
+    when(tooManyRequests.getResponseCode()).thenReturn(429);
+    AtomicInteger calls = new AtomicInteger();
+    long start = clock.now;
+
+    String result = scheduler.callIdempotent(() -> {
+      if (calls.incrementAndGet() < 3) {
+        throw tooManyRequests;
+      }
+      return "done";
+    });
+
+    assertThat(result).isEqualTo("done");
+    assertThat(calls.get()).isEqualTo(3);
+    assertThat(clock.now - start).isEqualTo(3_000);
+  }
+
+  @Test
+  public void should_give_up_after_max_attempts() {
+    GitHubRequestScheduler scheduler = new GitHubRequestScheduler(0, clock);
+    HttpException secondaryLimit = mock(HttpException.class);
+    when(secondaryLimit.getResponseCode()).thenReturn(HttpURLConnection.HTTP_FORBIDDEN);
+    when(secondaryLimit.getMessage()).thenReturn("You have exceeded a secondary rate limit");
+    AtomicInteger calls = new AtomicInteger();
+    try {
+      scheduler.runIdempotent(() -> {
+        calls.incrementAndGet();
+        throw secondaryLimit;
+      });
+      fail();
+    } catch (IOException e) {
+      assertThat(e).isSameAs(secondaryLimit);
+    }
+    assertThat(calls.get()).isEqualTo(GitHubRequestScheduler.MAX_ATTEMPTS);
+  }
+
+  @Test
+  public void should_pause_as_requested_by_headers_of_rate_limited_response() throws IOException {
+    GitHubRequestScheduler scheduler = new GitHubRequestScheduler(0, clock);
+    HttpException secondaryLimit = mock(HttpException.class);
+    when(secondaryLimit.getResponseCode()).thenReturn(HttpURLConnection.HTTP_FORBIDDEN);
+    when(secondaryLimit.getResponseHeaderFields()).thenReturn(headers("retry-after", "30"));
+    HttpException exhausted = mock(HttpException.class);
+    when(exhausted.getResponseCode()).thenReturn(429);
+    when(exhausted.getResponseHeaderFields())
+      .thenReturn(headers("X-RateLimit-Remaining", "0", "X-RateLimit-Reset", String.valueOf((clock.now + 120_000) / 1000)));
+    AtomicInteger calls = new AtomicInteger();
+    long start = clock.now;
+
+    // Rejected writes are sent again
+    scheduler.run(() -> {
+      int call = calls.incrementAndGet();
+      if (call == 1) {
+        throw secondaryLimit;
+      }
+      if (call == 2) {
+        throw exhausted;
+      }
+    });
+
+    assertThat(calls.get()).isEqualTo(3);
+    assertThat(clock.now - start).isEqualTo(120_000);
+  }
+
+  @Test
+  public void should_not_retry_write_without_proof_that_it_was_rejected() {
+    GitHubRequestScheduler scheduler = new GitHubRequestScheduler(0, clock);
+    HttpException secondaryLimit = mock(HttpException.class);
+    when(secondaryLimit.getResponseCode()).thenReturn(HttpURLConnection.HTTP_FORBIDDEN);
+    when(secondaryLimit.getMessage()).thenReturn("You have exceeded a secondary rate limit");
+    when(secondaryLimit.getResponseHeaderFields()).thenReturn(headers("X-RateLimit-Remaining", "12"));
+    AtomicInteger calls = new AtomicInteger();
+    try {
+      scheduler.run(() -> {
+        calls.incrementAndGet();
+        throw secondaryLimit;
+      });
+      fail();
+    } catch (IOException e) {
+      assertThat(e).isSameAs(secondaryLimit);
+    }
+    assertThat(calls.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void should_not_retry_other_errors() {
+    GitHubRequestScheduler scheduler = new GitHubRequestScheduler(0, clock);
+    HttpException notFound = mock(HttpException.class);
+    when(notFound.getResponseCode()).thenReturn(HttpURLConnection.HTTP_NOT_FOUND);
+    AtomicInteger calls = new AtomicInteger();
+    try {
+      scheduler.run(() -> {
+        calls.incrementAndGet();
+        throw notFound;
+      });
+      fail();
+    } catch (IOException e) {
+      assertThat(e).isSameAs(notFound);
+    }
+    assertThat(calls.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void should_retry_transient_errors_of_idempotent_requests() throws IOException {
+    GitHubRequestScheduler scheduler = new GitHubRequestScheduler(0, clock);
+    HttpException badGateway = mock(HttpException.class);
+    when(badGateway.getResponseCode()).thenReturn(HttpURLConnection.HTTP_BAD_GATEWAY);
+    AtomicInteger calls = new AtomicInteger();
+
+    scheduler.runIdempotent(() -> {
+      int call = calls.incrementAndGet();
+      if (call == 1) {
+        throw badGateway;
+      }
+      if (call == 2) {
+        throw new SocketTimeoutException("Read timed out");
+      }
+    });
+
+    assertThat(calls.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void should_not_retry_transient_errors_of_other_requests() {
+    GitHubRequestScheduler scheduler = new GitHubRequestScheduler(0, clock);
+    AtomicInteger calls = new AtomicInteger();
+    try {
+      scheduler.run(() -> {
+        calls.incrementAndGet();
+        throw new SocketTimeoutException("Read timed out");
+      });
+      fail();
+    } catch (IOException e) {
+      assertThat(e).hasMessage("Read timed out");
+    }
+    assertThat(calls.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void should_not_retry_permanent_errors_of_idempotent_requests() {
+    GitHubRequestScheduler scheduler = new GitHubRequestScheduler(0, clock);
+    AtomicInteger calls = new AtomicInteger();
+    try {
+      scheduler.runIdempotent(() -> {
+        calls.incrementAndGet();
+        throw new FileNotFoundException("Not Found");
+      });
+      fail();
+    } catch (IOException e) {
+      assertThat(e).isInstanceOf(FileNotFoundException.class);
+    }
+    assertThat(calls.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void should_fetch_listing_pages_lazily_as_scheduled_requests() throws IOException {
+    GitHubRequestScheduler scheduler = new GitHubRequestScheduler(0, clock);
+    HttpException tooManyRequests = mock(HttpException.class);
+    when(tooManyRequests.getResponseCode()).thenReturn(429);
+    PagedIterator<String> pages = mock(PagedIterator.class);
+    // The library wraps failures of page requests
+    when(pages.hasNext()).thenThrow(new IllegalStateException("Failed to retrieve page", tooManyRequests)).thenReturn(true);
+    when(pages.nextPage()).thenReturn(Arrays.asList("a", "b"), Arrays.asList("c"));
+    PagedIterable<String> iterable = mock(PagedIterable.class);
+    when(iterable._iterator(anyInt())).thenReturn(pages);
+    long start = clock.now;
+
+    GitHubRequestScheduler.Listing<String> listing = scheduler.list(iterable);
+    verify(pages, never()).hasNext();
+    assertThat(listing.next()).isEqualTo("a");
+    assertThat(listing.hasNext()).isTrue();
+    assertThat(listing.next()).isEqualTo("b");
+
+    // Rate limited page was fetched again after a pause, and the second page was never requested
+    assertThat(clock.now - start).isEqualTo(1_000);
+    verify(pages, times(1)).nextPage();
+  }
+
+  @Test
+  public void should_pause_as_requested_by_retry_after_header() throws IOException {
+    GitHubRequestScheduler scheduler = new GitHubRequestScheduler(0, clock);
+    HttpURLConnection connection = mock(HttpURLConnection.class);
+    when(connection.getHeaderField("Retry-After")).thenReturn("30");
+    long start = clock.now;
+
+    scheduler.abuseLimitHandler().onError(new IOException("abuse"), connection);
+
+    assertThat(clock.now - start).isEqualTo(30_000);
+  }
+
+  @Test
+  public void should_pause_until_rate_limit_reset() throws IOException {
+    GitHubRequestScheduler scheduler = new GitHubRequestScheduler(0, clock);
+    HttpURLConnection connection = mock(HttpURLConnection.class);
+    when(connection.getHeaderField("X-RateLimit-Reset")).thenReturn(String.valueOf((clock.now + 120_000) / 1000));
+    long start = clock.now;
+
+    scheduler.rateLimitHandler().onError(new IOException("rate limit"), connection);
+
+    assertThat(clock.now - start).isEqualTo(120_000);
+  }
+
+  private static Map<String, List<String>> headers(String... namesAndValues) {
+    Map<String, List<String>> headers = new HashMap<>();
+    for (int i = 0; i < namesAndValues.length; i += 2) {
+      headers.put(namesAndValues[i], Collections.singletonList(namesAndValues[i + 1]));
+    }
+    return headers;
+  }
+}
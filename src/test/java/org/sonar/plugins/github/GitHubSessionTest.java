@@ -0,0 +1,41 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+import org.junit.Test;
+import org.sonar.api.config.PropertyDefinitions;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.utils.System2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GitHubSessionTest {
+
+  @Test
+  public void should_build_client_once() throws Exception {
+    GitHubPluginConfiguration config = new GitHubPluginConfiguration(new MapSettings(new PropertyDefinitions(GitHubPlugin.class)), new System2());
+    GitHubRequestScheduler scheduler = new GitHubRequestScheduler(config);
+    GitHubSession session = new GitHubSession(config, scheduler, new GitHubConnectorProvider(config));
+
+    assertThat(session.scheduler()).isSameAs(scheduler);
+    assertThat(session.github()).isNotNull();
+    assertThat(session.github()).isSameAs(session.github());
+  }
+}
@@ -23,6 +23,10 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 import javax.annotation.CheckForNull;
 import org.junit.Before;
 import org.junit.Test;
@@ -333,4 +337,24 @@ public class GlobalReportTest {
 
     assertThat(formattedGlobalReport).isEqualTo(desiredMarkdown);
   }
+
+  @Test
+  public void shouldKeepMostSevereIssuesOutOfUnsortedIssues() {
+    List<PostJobIssue> issues = new ArrayList<>();
+    Severity[] severities = Severity.values();
+    for (int i = 0; i < 40; i++) {
+      issues.add(newMockedIssue("component" + (i % 3), null, i % 4, severities[i % severities.length], true, "Issue number:" + i, "rule" + i));
+    }
+    List<PostJobIssue> sortedIssues = new ArrayList<>(issues);
+    sortedIssues.sort(new IssueComparator());
+    Collections.shuffle(issues, new Random(7));
+
+    GlobalReport expected = new GlobalReport(new MarkDownUtils(settings), false);
+    sortedIssues.forEach(issue -> expected.process(issue, null, false));
+    GlobalReport topK = new GlobalReport(new MarkDownUtils(settings), false, GitHubPluginConfiguration.MAX_GLOBAL_ISSUES, true);
+    issues.forEach(issue -> topK.process(issue, null, false));
+
+    assertThat(topK.formatForMarkdown()).isEqualTo(expected.formatForMarkdown()).contains("#### Top 10 issues");
+    assertThat(topK.getStatusDescription()).isEqualTo(expected.getStatusDescription());
+  }
 }
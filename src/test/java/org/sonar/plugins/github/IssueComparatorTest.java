@@ -0,0 +1,86 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import javax.annotation.Nullable;
+import org.junit.Test;
+import org.sonar.api.batch.postjob.issue.PostJobIssue;
+import org.sonar.api.batch.rule.Severity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class IssueComparatorTest {
+
+  private static PostJobIssue newIssue(String componentKey, @Nullable Integer line, @Nullable Severity severity) {
+    PostJobIssue issue = mock(PostJobIssue.class);
+    when(issue.componentKey()).thenReturn(componentKey);
+    when(issue.line()).thenReturn(line);
+    when(issue.severity()).thenReturn(severity);
+    return issue;
+  }
+
+  @Test
+  public void should_sort_by_severity_component_and_line() {
+    PostJobIssue minor = newIssue("a", 1, Severity.MINOR);
+    PostJobIssue blockerB = newIssue("b", 1, Severity.BLOCKER);
+    PostJobIssue blockerA2 = newIssue("a", 2, Severity.BLOCKER);
+    PostJobIssue blockerANoLine = newIssue("a", null, Severity.BLOCKER);
+    PostJobIssue blockerA2Again = newIssue("a", 2, Severity.BLOCKER);
+    List<PostJobIssue> issues = new ArrayList<>(Arrays.asList(minor, blockerB, blockerA2, blockerANoLine, blockerA2Again));
+
+    IssueComparator.sort(issues);
+
+    assertThat(issues).containsExactly(blockerANoLine, blockerA2, blockerA2Again, blockerB, minor);
+  }
+
+  @Test
+  public void should_sort_like_comparator() {
+    Random random = new Random(42);
+    int[] lines = {Integer.MIN_VALUE, -1, 0, 1, 2, 1000, Integer.MAX_VALUE};
+    List<PostJobIssue> issues = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      Integer line = random.nextInt(5) == 0 ? null : lines[random.nextInt(lines.length)];
+      issues.add(newIssue("foo:src/File" + random.nextInt(50) + ".java", line, Severity.values()[random.nextInt(Severity.values().length)]));
+    }
+    List<PostJobIssue> expected = new ArrayList<>(issues);
+    expected.sort(new IssueComparator());
+
+    IssueComparator.sort(issues);
+
+    assertThat(issues).isEqualTo(expected);
+  }
+
+  @Test
+  public void should_fall_back_to_comparator_without_severity() {
+    PostJobIssue first = newIssue("b", 1, null);
+    PostJobIssue second = newIssue("a", 1, null);
+    List<PostJobIssue> issues = new ArrayList<>(Arrays.asList(first, second));
+
+    IssueComparator.sort(issues);
+
+    assertThat(issues).containsExactly(second, first);
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import org.junit.Test;
+import org.sonar.api.batch.fs.InputComponent;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.postjob.issue.PostJobIssue;
+import org.sonar.api.batch.rule.Severity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class IssueIndexTest {
+
+  private final InputComponent foo = new TestInputFileBuilder("foo", "src/Foo.php").build();
+  private final InputComponent bar = new TestInputFileBuilder("foo", "src/Bar.php").build();
+
+  private static PostJobIssue newIssue(String componentKey, @Nullable InputComponent inputComponent, @Nullable Integer line, Severity severity, boolean isNew) {
+    PostJobIssue issue = mock(PostJobIssue.class);
+    when(issue.componentKey()).thenReturn(componentKey);
+    when(issue.inputComponent()).thenReturn(inputComponent);
+    when(issue.line()).thenReturn(line);
+    when(issue.severity()).thenReturn(severity);
+    when(issue.isNew()).thenReturn(isNew);
+    return issue;
+  }
+
+  @Test
+  public void should_keep_only_new_issues_sorted() {
+    PostJobIssue fooMinor = newIssue("foo:src/Foo.php", foo, 1, Severity.MINOR, true);
+    PostJobIssue fooBlocker2 = newIssue("foo:src/Foo.php", foo, 2, Severity.BLOCKER, true);
+    PostJobIssue fooBlocker1 = newIssue("foo:src/Foo.php", foo, 1, Severity.BLOCKER, true);
+    PostJobIssue barMajor = newIssue("foo:src/Bar.php", bar, 3, Severity.MAJOR, true);
+    PostJobIssue project = newIssue("foo", null, null, Severity.CRITICAL, true);
+    PostJobIssue old = newIssue("foo:src/Bar.php", bar, 4, Severity.BLOCKER, false);
+
+    IssueIndex index = IssueIndex.of(Arrays.asList(fooMinor, fooBlocker2, barMajor, old, project, fooBlocker1));
+
+    assertThat(index.size()).isEqualTo(5);
+    assertThat(index.issues(f -> true)).containsExactly(fooBlocker1, fooBlocker2, project, barMajor, fooMinor);
+    assertThat(index.issues(f -> f == foo)).containsExactly(fooBlocker1, fooBlocker2, project, fooMinor);
+    assertThat(index.issues(f -> false)).containsExactly(project);
+  }
+
+  @Test
+  public void should_test_each_file_once() {
+    PostJobIssue issue1 = newIssue("foo:src/Foo.php", foo, 1, Severity.MINOR, true);
+    PostJobIssue issue2 = newIssue("foo:src/Foo.php", foo, 2, Severity.MINOR, true);
+    PostJobIssue issue3 = newIssue("foo:src/Bar.php", bar, 1, Severity.MINOR, true);
+    IssueIndex index = IssueIndex.of(Arrays.asList(issue1, issue2, issue3));
+
+    AtomicInteger calls = new AtomicInteger();
+    assertThat(index.issues(f -> calls.incrementAndGet() > 0)).containsExactly(issue3, issue1, issue2);
+    assertThat(calls.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void should_keep_reported_order_when_not_sorting() {
+    PostJobIssue fooMinor = newIssue("foo:src/Foo.php", foo, 1, Severity.MINOR, true);
+    PostJobIssue project = newIssue("foo", null, null, Severity.CRITICAL, true);
+    PostJobIssue fooBlocker = newIssue("foo:src/Foo.php", foo, 2, Severity.BLOCKER, true);
+
+    IssueIndex index = IssueIndex.of(Arrays.asList(fooMinor, project, fooBlocker), false);
+
+    assertThat(index.issues(f -> true)).containsExactly(fooMinor, project, fooBlocker);
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.api.config.internal.MapSettings;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MarkDownUtilsTest {
+
+  private MarkDownUtils markDownUtils;
+
+  @Before
+  public void setup() {
+    MapSettings settings = new MapSettings();
+    settings.setProperty("sonar.host.url", "http://myserver");
+    markDownUtils = new MarkDownUtils(settings);
+  }
+
+  @Test
+  public void should_cache_rule_links() {
+    String link = markDownUtils.getRuleLink("repo:rule");
+
+    assertThat(link).isEqualTo("[![rule](https://sonarsource.github.io/sonar-github/rule.png)](http://myserver/coding_rules#rule_key=repo%3Arule)");
+    assertThat(markDownUtils.getRuleLink("repo:rule")).isSameAs(link);
+    assertThat(markDownUtils.getRuleLink("repo:other")).isEqualTo("[![rule](https://sonarsource.github.io/sonar-github/rule.png)](http://myserver/coding_rules#rule_key=repo%3Aother)");
+    assertThat(markDownUtils.ruleLinkCacheHits()).isEqualTo(1);
+    assertThat(markDownUtils.ruleLinkCacheMisses()).isEqualTo(2);
+  }
+
+  @Test
+  public void should_bound_rule_link_cache() {
+    for (int i = 0; i < MarkDownUtils.RULE_LINK_CACHE_SIZE + 10; i++) {
+      markDownUtils.getRuleLink("repo:rule" + i);
+    }
+    String link = markDownUtils.getRuleLink("repo:rule" + (MarkDownUtils.RULE_LINK_CACHE_SIZE + 5));
+
+    assertThat(link).endsWith("coding_rules#rule_key=repo%3Arule" + (MarkDownUtils.RULE_LINK_CACHE_SIZE + 5) + ")");
+    assertThat(markDownUtils.ruleLinkCacheHits()).isZero();
+    assertThat(markDownUtils.ruleLinkCacheMisses()).isEqualTo(MarkDownUtils.RULE_LINK_CACHE_SIZE + 11);
+  }
+
+  @Test
+  public void should_use_last_url_segment_as_location() throws MalformedURLException {
+    assertThat(MarkDownUtils.getLocation(new URL("https://github.com/SonarSource/sonar-java/blob/abc123/src/main/with%20space/Foo.java#L10")))
+      .isEqualTo("Foo.java#L10");
+    assertThat(MarkDownUtils.getLocation(new URL("https://github.com/SonarSource/sonar-java/blob/abc123/"))).isEqualTo("Project");
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PatchPositionIndexTest {
+
+  @Test
+  public void should_map_lines_of_several_hunks() {
+    PatchPositionIndex index = PatchPositionIndex.parse("@@ -1,2 +1,3 @@\n a\n-b\n+c\n+d\n@@ -20 +21 @@\n e", false);
+
+    assertThat(index.size()).isEqualTo(4);
+    assertThat(index.position(1)).isEqualTo(1);
+    assertThat(index.position(2)).isEqualTo(3);
+    assertThat(index.position(3)).isEqualTo(4);
+    assertThat(index.position(21)).isEqualTo(6);
+    assertThat(index.contains(4)).isFalse();
+    assertThat(index.contains(20)).isFalse();
+    assertThat(index.contains(22)).isFalse();
+    assertThat(index.position(0)).isEqualTo(PatchPositionIndex.NO_POSITION);
+  }
+
+  @Test
+  public void should_be_empty_without_changed_lines() {
+    PatchPositionIndex index = PatchPositionIndex.parse("@@ -1 +0,0 @@\n-<fake/>", false);
+
+    assertThat(index.size()).isZero();
+    assertThat(index.contains(1)).isFalse();
+    assertThat(PatchPositionIndex.EMPTY.contains(Integer.MAX_VALUE)).isFalse();
+  }
+
+  @Test
+  public void should_keep_last_position_of_unordered_lines() {
+    PatchPositionIndex.Builder builder = new PatchPositionIndex.Builder();
+    builder.add(10, 1);
+    builder.add(11, 2);
+    builder.add(5, 3);
+    builder.add(10, 4);
+    PatchPositionIndex index = builder.build();
+
+    assertThat(index.size()).isEqualTo(3);
+    assertThat(index.position(5)).isEqualTo(3);
+    assertThat(index.position(10)).isEqualTo(4);
+    assertThat(index.position(11)).isEqualTo(2);
+  }
+
+  @Test
+  public void should_not_overflow_on_extreme_lines() {
+    PatchPositionIndex.Builder builder = new PatchPositionIndex.Builder();
+    builder.add(-1, 0);
+    builder.add(0, 1);
+    PatchPositionIndex index = builder.build();
+
+    assertThat(index.contains(Integer.MAX_VALUE)).isFalse();
+    assertThat(index.contains(Integer.MIN_VALUE)).isFalse();
+    assertThat(index.position(0)).isEqualTo(1);
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.plugins.github.ReviewCommentReconciler.Location;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.data.MapEntry.entry;
+
+public class PublishedCommentsStateTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void should_store_and_load_state() throws Exception {
+    File directory = temp.newFolder();
+    Path file = PublishedCommentsState.file(new File(directory, "state"), "SonarSource/sonar-github", 12);
+    assertThat(file.getFileName().toString()).isEqualTo("SonarSource_sonar-github_12.properties");
+
+    PublishedCommentsState state = new PublishedCommentsState("SonarSource/sonar-github", 12, "abc123");
+    state.addReviewComment(1L, "src/with:colon.java", 3, "hash1");
+    state.addReviewComment(2L, "src/Foo.java", 7, "hash2");
+    state.addGlobalComment(3L, "hash3");
+    state.setCommentCounts(5, 2);
+    state.store(file);
+
+    PublishedCommentsState loaded = PublishedCommentsState.load(file);
+    assertThat(loaded.matches("SonarSource/sonar-github", 12, "abc123", 5, 2)).isTrue();
+    assertThat(loaded.reviewCommentHashes()).containsOnly(entry(new Location("src/with:colon.java", 3), "hash1"), entry(new Location("src/Foo.java", 7), "hash2"));
+    assertThat(loaded.reviewCommentId(new Location("src/Foo.java", 7))).isEqualTo(2L);
+    assertThat(loaded.globalCommentHashes()).containsOnly(entry(3L, "hash3"));
+  }
+
+  @Test
+  public void should_not_match_another_commit_or_other_comment_counts() {
+    PublishedCommentsState state = new PublishedCommentsState("SonarSource/sonar-github", 12, "abc123");
+    state.setCommentCounts(5, 2);
+
+    assertThat(state.matches("SonarSource/sonar-github", 12, "abc123", 5, 2)).isTrue();
+    assertThat(state.matches("SonarSource/sonar-github", 12, "def456", 5, 2)).isFalse();
+    assertThat(state.matches("SonarSource/sonar-github", 13, "abc123", 5, 2)).isFalse();
+    assertThat(state.matches("SonarSource/sonar-java", 12, "abc123", 5, 2)).isFalse();
+    assertThat(state.matches("SonarSource/sonar-github", 12, "abc123", 6, 2)).isFalse();
+    assertThat(state.matches("SonarSource/sonar-github", 12, "abc123", 5, 1)).isFalse();
+  }
+
+  @Test
+  public void should_ignore_missing_or_invalid_state() throws Exception {
+    Path file = temp.newFolder().toPath().resolve("state.properties");
+    assertThat(PublishedCommentsState.load(file)).isNull();
+
+    Files.write(file, "repository=SonarSource/sonar-github\npullRequest=12\n".getBytes(StandardCharsets.UTF_8));
+    assertThat(PublishedCommentsState.load(file)).isNull();
+
+    Files.write(file, ("repository=SonarSource/sonar-github\npullRequest=12\nheadSha=abc123\nreviewCommentCount=1\nissueCommentCount=0\n"
+      + "reviewComment.1=foo\n").getBytes(StandardCharsets.UTF_8));
+    assertThat(PublishedCommentsState.load(file)).isNull();
+  }
+}
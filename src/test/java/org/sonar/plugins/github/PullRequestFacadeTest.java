@@ -20,28 +20,47 @@
 package org.sonar.plugins.github;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.assertj.core.data.MapEntry;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.kohsuke.github.GHCommitState;
 import org.kohsuke.github.GHCommitStatus;
+import org.kohsuke.github.GHIssueComment;
 import org.kohsuke.github.GHPullRequest;
+import org.kohsuke.github.GHPullRequestFileDetail;
+import org.kohsuke.github.GHPullRequestReviewComment;
 import org.kohsuke.github.GHRepository;
 import org.kohsuke.github.PagedIterable;
+import org.kohsuke.github.PagedIterator;
 import org.mockito.Mockito;
+import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.InputPath;
 import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.withSettings;
 
@@ -70,59 +89,57 @@ public class PullRequestFacadeTest {
 
   @Test
   public void testPatchLineMapping_some_deleted_lines() throws IOException {
-    Map<Integer, Integer> patchLocationMapping = new LinkedHashMap<Integer, Integer>();
-    PullRequestFacade
+    PatchPositionIndex index = PullRequestFacade
       .processPatch(
-        patchLocationMapping,
         "@@ -17,9 +17,6 @@\n  * along with this program; if not, write to the Free Software Foundation,\n  * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.\n  */\n-/**\n- * Deprecated in 4.5.1. JFreechart charts are replaced by Javascript charts.\n- */\n @ParametersAreNonnullByDefault\n package org.sonar.plugins.core.charts;\n ",
         false);
 
-    assertThat(patchLocationMapping).containsOnly(MapEntry.entry(17, 1), MapEntry.entry(18, 2), MapEntry.entry(19, 3), MapEntry.entry(20, 7), MapEntry.entry(21, 8),
+    assertThat(toMap(index)).containsOnly(MapEntry.entry(17, 1), MapEntry.entry(18, 2), MapEntry.entry(19, 3), MapEntry.entry(20, 7), MapEntry.entry(21, 8),
       MapEntry.entry(22, 9));
   }
 
   @Test
   public void testPatchLineMapping_some_added_lines() throws IOException {
-    Map<Integer, Integer> patchLocationMapping = new LinkedHashMap<Integer, Integer>();
-    PullRequestFacade
+    PatchPositionIndex index = PullRequestFacade
       .processPatch(
-        patchLocationMapping,
         "@@ -24,9 +24,9 @@\n /**\n  * A plugin is a group of extensions. See <code>org.sonar.api.Extension</code> interface to browse\n  * available extension points.\n- * <p/>\n  * <p>The manifest property <code>Plugin-Class</code> must declare the name of the implementation class.\n  * It is automatically set by sonar-packaging-maven-plugin when building plugins.</p>\n+ * <p>Implementation must declare a public constructor with no-parameters.</p>\n  *\n  * @see org.sonar.api.Extension\n  * @since 1.10",
         false);
 
-    assertThat(patchLocationMapping).containsOnly(MapEntry.entry(24, 1), MapEntry.entry(25, 2), MapEntry.entry(26, 3), MapEntry.entry(27, 5), MapEntry.entry(28, 6),
+    assertThat(toMap(index)).containsOnly(MapEntry.entry(24, 1), MapEntry.entry(25, 2), MapEntry.entry(26, 3), MapEntry.entry(27, 5), MapEntry.entry(28, 6),
       MapEntry.entry(29, 7), MapEntry.entry(30, 8), MapEntry.entry(31, 9), MapEntry.entry(32, 10));
   }
 
   @Test
   public void testPatchLineMapping_some_added_lines_ignoring_unchanged() throws IOException {
-    Map<Integer, Integer> patchLocationMapping = new LinkedHashMap<Integer, Integer>();
-    PullRequestFacade
+    PatchPositionIndex index = PullRequestFacade
       .processPatch(
-        patchLocationMapping,
         "@@ -24,9 +24,9 @@\n /**\n  * A plugin is a group of extensions. See <code>org.sonar.api.Extension</code> interface to browse\n  * available extension points.\n- * <p/>\n  * <p>The manifest property <code>Plugin-Class</code> must declare the name of the implementation class.\n  * It is automatically set by sonar-packaging-maven-plugin when building plugins.</p>\n+ * <p>Implementation must declare a public constructor with no-parameters.</p>\n  *\n  * @see org.sonar.api.Extension\n  * @since 1.10",
         true);
 
-    assertThat(patchLocationMapping).containsOnly(MapEntry.entry(29, 7));
+    assertThat(toMap(index)).containsOnly(MapEntry.entry(29, 7));
   }
 
   @Test
   public void testPatchLineMapping_no_newline_at_the_end() throws IOException {
-    Map<Integer, Integer> patchLocationMapping = new LinkedHashMap<Integer, Integer>();
-    PullRequestFacade
+    PatchPositionIndex index = PullRequestFacade
       .processPatch(
-        patchLocationMapping,
         "@@ -1 +0,0 @@\n-<fake/>\n\\ No newline at end of file",
         false);
 
-    assertThat(patchLocationMapping).isEmpty();
+    assertThat(toMap(index)).isEmpty();
+  }
+
+  private static Map<Integer, Integer> toMap(PatchPositionIndex index) {
+    Map<Integer, Integer> patchLocationMapping = new LinkedHashMap<>();
+    index.forEach(patchLocationMapping::put);
+    return patchLocationMapping;
   }
 
   @Test
   public void testEmptyGetCommitStatusForContext() throws IOException {
     PullRequestFacade facade = new PullRequestFacade(mock(GitHubPluginConfiguration.class));
     GHRepository ghRepo = mock(GHRepository.class);
-    PagedIterable<GHCommitStatus> ghCommitStatuses = Mockito.mock(PagedIterable.class);
+    PagedIterable<GHCommitStatus> ghCommitStatuses = pagedIterable();
     GHPullRequest pr = mock(GHPullRequest.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS));
     when(pr.getRepository()).thenReturn(ghRepo);
     when(pr.getHead().getSha()).thenReturn("abc123");
@@ -134,19 +151,91 @@ public class PullRequestFacadeTest {
   public void testGetCommitStatusForContextWithOneCorrectStatus() throws IOException {
     PullRequestFacade facade = new PullRequestFacade(mock(GitHubPluginConfiguration.class));
     GHRepository ghRepo = mock(GHRepository.class);
-    PagedIterable<GHCommitStatus> ghCommitStatuses = Mockito.mock(PagedIterable.class);
-    List<GHCommitStatus> ghCommitStatusesList = new ArrayList<>();
     GHCommitStatus ghCommitStatusGHPRHContext = Mockito.mock(GHCommitStatus.class);
-    ghCommitStatusesList.add(ghCommitStatusGHPRHContext);
+    PagedIterable<GHCommitStatus> ghCommitStatuses = pagedIterable(ghCommitStatusGHPRHContext);
     GHPullRequest pr = mock(GHPullRequest.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS));
     when(pr.getRepository()).thenReturn(ghRepo);
     when(pr.getHead().getSha()).thenReturn("abc123");
     when(ghRepo.listCommitStatuses(pr.getHead().getSha())).thenReturn(ghCommitStatuses);
-    when(ghCommitStatuses.asList()).thenReturn(ghCommitStatusesList);
     when(ghCommitStatusGHPRHContext.getContext()).thenReturn(PullRequestFacade.COMMIT_CONTEXT);
     assertThat(facade.getCommitStatusForContext(pr, PullRequestFacade.COMMIT_CONTEXT).getContext()).isEqualTo(PullRequestFacade.COMMIT_CONTEXT);
   }
 
+  @Test
+  public void testGetCommitStatusForContextStopsAtFirstMatch() throws IOException {
+    GitHubPluginConfiguration config = mock(GitHubPluginConfiguration.class);
+    when(config.pageSize()).thenReturn(100);
+    PullRequestFacade facade = new PullRequestFacade(config);
+    GHCommitStatus ci = mock(GHCommitStatus.class);
+    when(ci.getContext()).thenReturn("ci");
+    GHCommitStatus sonarqube = mock(GHCommitStatus.class);
+    when(sonarqube.getContext()).thenReturn(PullRequestFacade.COMMIT_CONTEXT);
+    GHCommitStatus older = mock(GHCommitStatus.class);
+    PagedIterable<GHCommitStatus> ghCommitStatuses = pagedIterable(ci, sonarqube, older);
+    GHPullRequest pr = mock(GHPullRequest.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS));
+    when(pr.getHead().getSha()).thenReturn("abc123");
+    when(pr.getRepository().listCommitStatuses("abc123")).thenReturn(ghCommitStatuses);
+
+    assertThat(facade.getCommitStatusForContext(pr, PullRequestFacade.COMMIT_CONTEXT)).isSameAs(sonarqube);
+    verify(ghCommitStatuses).withPageSize(100);
+    verify(older, never()).getContext();
+  }
+
+  @Test
+  public void testCommitStatusIsLookedUpOnce() throws IOException {
+    PullRequestFacade facade = new PullRequestFacade(mock(GitHubPluginConfiguration.class));
+    GHCommitStatus previous = mock(GHCommitStatus.class);
+    when(previous.getContext()).thenReturn(PullRequestFacade.COMMIT_CONTEXT);
+    when(previous.getTargetUrl()).thenReturn("http://ci/job/1");
+    PagedIterable<GHCommitStatus> ghCommitStatuses = pagedIterable(previous);
+    GHRepository ghRepo = mock(GHRepository.class);
+    GHPullRequest pr = mock(GHPullRequest.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS));
+    when(pr.getHead().getSha()).thenReturn("abc123");
+    when(pr.getRepository()).thenReturn(ghRepo);
+    when(ghRepo.listCommitStatuses("abc123")).thenReturn(ghCommitStatuses);
+    facade.setGhRepo(ghRepo);
+    facade.setPr(pr);
+
+    facade.createOrUpdateSonarQubeStatus(GHCommitState.PENDING, "in progress", false);
+    facade.createOrUpdateSonarQubeStatus(GHCommitState.SUCCESS, "no issue", false);
+
+    verify(ghRepo, times(1)).listCommitStatuses("abc123");
+    verify(ghRepo).createCommitStatus("abc123", GHCommitState.PENDING, "http://ci/job/1", "in progress", PullRequestFacade.COMMIT_CONTEXT);
+    verify(ghRepo).createCommitStatus("abc123", GHCommitState.SUCCESS, "http://ci/job/1", "no issue", PullRequestFacade.COMMIT_CONTEXT);
+  }
+
+  @Test
+  public void testInitLoadsLoginAndFilesConcurrently() throws Exception {
+    GitHubPluginConfiguration config = mock(GitHubPluginConfiguration.class);
+    GitHubSession session = mock(GitHubSession.class);
+    when(session.scheduler()).thenReturn(new GitHubRequestScheduler(config));
+    GHRepository ghRepo = mock(GHRepository.class);
+    when(session.repository()).thenReturn(ghRepo);
+    GHPullRequest pr = mock(GHPullRequest.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS));
+    when(ghRepo.getPullRequest(1)).thenReturn(pr);
+    GHPullRequestFileDetail file = mock(GHPullRequestFileDetail.class);
+    when(file.getFilename()).thenReturn("src/Foo.java");
+    PagedIterable<GHPullRequestFileDetail> files = pagedIterable(file);
+    CountDownLatch filesListed = new CountDownLatch(1);
+    AtomicBoolean concurrent = new AtomicBoolean();
+    when(pr.listFiles()).thenAnswer(invocation -> {
+      filesListed.countDown();
+      return files;
+    });
+    // Only answers once the files are listed, which never happens if the lookups are sequential
+    when(session.myself()).thenAnswer(invocation -> {
+      concurrent.set(filesListed.await(10, TimeUnit.SECONDS));
+      return "sonar";
+    });
+
+    File projectBaseDir = temp.newFolder();
+    PullRequestFacade facade = new PullRequestFacade(config, session);
+    facade.init(1, projectBaseDir);
+
+    assertThat(concurrent.get()).isTrue();
+    assertThat(facade.hasFile(new TestInputFileBuilder("foo", "src/Foo.java").setModuleBaseDir(projectBaseDir.toPath()).build())).isTrue();
+  }
+
   @Test
   public void testInitGitBaseDirNotFound() throws Exception {
     PullRequestFacade facade = new PullRequestFacade(mock(GitHubPluginConfiguration.class));
@@ -167,4 +256,258 @@ public class PullRequestFacadeTest {
     assertThat(facade.getPath(new TestInputFileBuilder("foo", "src/main/java/Foo.java")
       .setModuleBaseDir(projectBaseDir.toPath()).build())).isEqualTo("myProject/src/main/java/Foo.java");
   }
+
+  @Test
+  public void testPatchLineMappingOnDemand() throws Exception {
+    PullRequestFacade facade = new PullRequestFacade(mock(GitHubPluginConfiguration.class));
+    File projectBaseDir = temp.newFolder();
+    facade.setGitBaseDir(projectBaseDir);
+    Map<String, String> patches = new HashMap<>();
+    patches.put("src/Foo.java", "@@ -1,2 +1,3 @@\n a\n+b\n c");
+    patches.put("src/Bar.java", null);
+    facade.setPatches(patches);
+
+    InputFile foo = new TestInputFileBuilder("foo", "src/Foo.java").setModuleBaseDir(projectBaseDir.toPath()).build();
+    InputFile bar = new TestInputFileBuilder("foo", "src/Bar.java").setModuleBaseDir(projectBaseDir.toPath()).build();
+    InputFile baz = new TestInputFileBuilder("foo", "src/Baz.java").setModuleBaseDir(projectBaseDir.toPath()).build();
+    assertThat(facade.hasFile(foo)).isTrue();
+    assertThat(facade.hasFileLine(foo, 2)).isTrue();
+    assertThat(facade.hasFileLine(foo, 4)).isFalse();
+    assertThat(facade.hasFile(bar)).isTrue();
+    assertThat(facade.hasFileLine(bar, 1)).isFalse();
+    assertThat(facade.hasFile(baz)).isFalse();
+  }
+
+  @Test
+  public void testGetPathIsCached() throws Exception {
+    PullRequestFacade facade = new PullRequestFacade(mock(GitHubPluginConfiguration.class));
+    File gitBaseDir = temp.newFolder();
+    facade.setGitBaseDir(gitBaseDir);
+    InputPath inputPath = mock(InputPath.class);
+    when(inputPath.file()).thenReturn(new File(gitBaseDir, "src/Foo.java"));
+
+    assertThat(facade.getPath(inputPath)).isEqualTo("src/Foo.java");
+    assertThat(facade.getPath(inputPath)).isEqualTo("src/Foo.java");
+    verify(inputPath, times(1)).file();
+
+    facade.setGitBaseDir(gitBaseDir.getParentFile());
+    assertThat(facade.getPath(inputPath)).isEqualTo(gitBaseDir.getName() + "/src/Foo.java");
+  }
+
+  @Test
+  public void testPublishReviewCommentsSendsOnlyTheDelta() throws Exception {
+    PullRequestFacade facade = new PullRequestFacade(mock(GitHubPluginConfiguration.class));
+    File projectBaseDir = temp.newFolder();
+    facade.setGitBaseDir(projectBaseDir);
+    facade.setMyself("sonar");
+    Map<String, String> patches = new HashMap<>();
+    patches.put("src/Foo.java", "@@ -1,2 +1,4 @@\n a\n+b\n+c\n d");
+    facade.setPatches(patches);
+    GHPullRequest pr = mock(GHPullRequest.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS));
+    when(pr.getHead().getSha()).thenReturn("abc123");
+    GHPullRequestReviewComment unchanged = reviewComment("sonar", "src/Foo.java", 2, "unchanged");
+    GHPullRequestReviewComment changed = reviewComment("sonar", "src/Foo.java", 3, "old");
+    GHPullRequestReviewComment outdated = reviewComment("sonar", "src/Foo.java", 4, "outdated");
+    GHPullRequestReviewComment other = reviewComment("someone", "src/Foo.java", 1, "other");
+    PagedIterable<GHPullRequestReviewComment> comments = pagedIterable(unchanged, changed, outdated, other);
+    when(pr.listReviewComments()).thenReturn(comments);
+    facade.setPr(pr);
+
+    InputFile foo = new TestInputFileBuilder("foo", "src/Foo.java").setModuleBaseDir(projectBaseDir.toPath()).build();
+    facade.createOrUpdateReviewComment(foo, 1, "new");
+    facade.createOrUpdateReviewComment(foo, 2, "unchanged");
+    facade.createOrUpdateReviewComment(foo, 3, "updated");
+    facade.publishReviewComments();
+
+    verify(pr).createReviewComment("new", "abc123", "src/Foo.java", 1);
+    verify(unchanged, never()).update(anyString());
+    verify(unchanged, never()).delete();
+    verify(changed).update("updated");
+    verify(outdated).delete();
+    verify(other, never()).delete();
+  }
+
+  @Test
+  public void testAlreadyDeletedReviewCommentIsNotAFailure() throws Exception {
+    PullRequestFacade facade = new PullRequestFacade(mock(GitHubPluginConfiguration.class));
+    File stateDirectory = temp.newFolder();
+    facade.setGitBaseDir(temp.newFolder());
+    facade.setMyself("sonar");
+    facade.setPatches(new HashMap<>());
+    GHPullRequest pr = mock(GHPullRequest.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS));
+    when(pr.getHead().getSha()).thenReturn("abc123");
+    GHPullRequestReviewComment alreadyDeleted = reviewComment("sonar", "src/Foo.java", 2, "outdated");
+    doThrow(new FileNotFoundException("Not Found")).when(alreadyDeleted).delete();
+    PagedIterable<GHPullRequestReviewComment> comments = pagedIterable(alreadyDeleted);
+    when(pr.listReviewComments()).thenReturn(comments);
+    facade.setPr(pr);
+    facade.loadPublishedCommentsState(stateDirectory, "SonarSource/sonar-github", 1);
+
+    facade.publishReviewComments();
+    facade.storePublishedComments();
+
+    verify(alreadyDeleted, times(1)).delete();
+    // A failed deletion would have prevented the state from being stored
+    assertThat(PublishedCommentsState.file(stateDirectory, "SonarSource/sonar-github", 1).toFile()).exists();
+  }
+
+  @Test
+  public void testPublishReviewCommentsOfUnchangedPullRequestDoesNotWrite() throws Exception {
+    PullRequestFacade facade = new PullRequestFacade(mock(GitHubPluginConfiguration.class));
+    File projectBaseDir = temp.newFolder();
+    facade.setGitBaseDir(projectBaseDir);
+    facade.setMyself("sonar");
+    Map<String, String> patches = new HashMap<>();
+    patches.put("src/Foo.java", "@@ -1,2 +1,3 @@\n a\n+b\n c");
+    facade.setPatches(patches);
+    GHPullRequest pr = mock(GHPullRequest.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS));
+    GHPullRequestReviewComment existing = reviewComment("sonar", "src/Foo.java", 2, "issue");
+    PagedIterable<GHPullRequestReviewComment> comments = pagedIterable(existing);
+    when(pr.listReviewComments()).thenReturn(comments);
+    facade.setPr(pr);
+
+    facade.createOrUpdateReviewComment(new TestInputFileBuilder("foo", "src/Foo.java").setModuleBaseDir(projectBaseDir.toPath()).build(), 2, "issue");
+    facade.publishReviewComments();
+
+    verify(pr, never()).createReviewComment(anyString(), anyString(), anyString(), anyInt());
+    verify(existing, never()).update(anyString());
+    verify(existing, never()).delete();
+  }
+
+  @Test
+  public void testPublishedCommentsStateAvoidsListingComments() throws Exception {
+    File stateDirectory = temp.newFolder();
+    File projectBaseDir = temp.newFolder();
+    InputFile foo = new TestInputFileBuilder("foo", "src/Foo.java").setModuleBaseDir(projectBaseDir.toPath()).build();
+    Map<String, String> patches = new HashMap<>();
+    patches.put("src/Foo.java", "@@ -1,2 +1,3 @@\n a\n+b\n c");
+
+    GHPullRequest firstPr = mock(GHPullRequest.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS));
+    when(firstPr.getHead().getSha()).thenReturn("abc123");
+    PagedIterable<GHPullRequestReviewComment> noReviewComment = pagedIterable();
+    when(firstPr.listReviewComments()).thenReturn(noReviewComment);
+    PagedIterable<GHIssueComment> noComment = pagedIterable();
+    when(firstPr.listComments()).thenReturn(noComment);
+    PullRequestFacade facade = publishWithState(firstPr, stateDirectory, projectBaseDir, patches);
+    facade.createOrUpdateReviewComment(foo, 2, "issue");
+    facade.publishReviewComments();
+    facade.createOrUpdateGlobalComments("global");
+    facade.storePublishedComments();
+    verify(firstPr).createReviewComment("issue", "abc123", "src/Foo.java", 2);
+    verify(firstPr).comment("global");
+
+    // Same commit and comment counts: nothing is listed
+    GHPullRequest secondPr = mock(GHPullRequest.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS));
+    when(secondPr.getHead().getSha()).thenReturn("abc123");
+    when(secondPr.getReviewComments()).thenReturn(1);
+    when(secondPr.getCommentsCount()).thenReturn(1);
+    facade = publishWithState(secondPr, stateDirectory, projectBaseDir, patches);
+    facade.createOrUpdateReviewComment(foo, 2, "issue");
+    facade.publishReviewComments();
+    facade.createOrUpdateGlobalComments("global");
+    facade.storePublishedComments();
+    verify(secondPr, never()).listReviewComments();
+    verify(secondPr, never()).listComments();
+    verify(secondPr, never()).createReviewComment(anyString(), anyString(), anyString(), anyInt());
+    verify(secondPr, never()).comment(anyString());
+
+    // A comment was added since then: the snapshot is stale and comments are listed again
+    GHPullRequest thirdPr = mock(GHPullRequest.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS));
+    when(thirdPr.getHead().getSha()).thenReturn("abc123");
+    when(thirdPr.getReviewComments()).thenReturn(2);
+    when(thirdPr.getCommentsCount()).thenReturn(1);
+    PagedIterable<GHPullRequestReviewComment> publishedReviewComments = pagedIterable(reviewComment("sonar", "src/Foo.java", 2, "issue"),
+      reviewComment("reviewer", "src/Foo.java", 2, "agreed"));
+    when(thirdPr.listReviewComments()).thenReturn(publishedReviewComments);
+    PagedIterable<GHIssueComment> publishedComments = pagedIterable(issueComment("sonar", "global"));
+    when(thirdPr.listComments()).thenReturn(publishedComments);
+    facade = publishWithState(thirdPr, stateDirectory, projectBaseDir, patches);
+    facade.createOrUpdateReviewComment(foo, 2, "issue");
+    facade.publishReviewComments();
+    facade.createOrUpdateGlobalComments("global");
+    facade.storePublishedComments();
+    verify(thirdPr).listReviewComments();
+    verify(thirdPr).listComments();
+    verify(thirdPr, never()).createReviewComment(anyString(), anyString(), anyString(), anyInt());
+    verify(thirdPr, never()).comment(anyString());
+
+    // Another commit doesn't use the snapshot
+    GHPullRequest fourthPr = mock(GHPullRequest.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS));
+    when(fourthPr.getHead().getSha()).thenReturn("def456");
+    when(fourthPr.getReviewComments()).thenReturn(2);
+    when(fourthPr.getCommentsCount()).thenReturn(1);
+    when(fourthPr.listReviewComments()).thenReturn(publishedReviewComments);
+    when(fourthPr.listComments()).thenReturn(publishedComments);
+    facade = publishWithState(fourthPr, stateDirectory, projectBaseDir, patches);
+    facade.createOrUpdateReviewComment(foo, 2, "issue");
+    facade.publishReviewComments();
+    facade.createOrUpdateGlobalComments("global");
+    verify(fourthPr).listReviewComments();
+    verify(fourthPr).listComments();
+  }
+
+  @Test
+  public void testUnusableStateDirectoryOnlyDisablesSnapshot() throws Exception {
+    // A regular file can't hold the state
+    File stateDirectory = temp.newFile();
+    GHPullRequest pr = mock(GHPullRequest.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS));
+    when(pr.getHead().getSha()).thenReturn("abc123");
+    PagedIterable<GHPullRequestReviewComment> noReviewComment = pagedIterable();
+    when(pr.listReviewComments()).thenReturn(noReviewComment);
+    PagedIterable<GHIssueComment> noComment = pagedIterable();
+    when(pr.listComments()).thenReturn(noComment);
+
+    PullRequestFacade facade = publishWithState(pr, stateDirectory, temp.newFolder(), new HashMap<>());
+    facade.publishReviewComments();
+    facade.createOrUpdateGlobalComments(null);
+    facade.storePublishedComments();
+
+    verify(pr).listReviewComments();
+    verify(pr).listComments();
+    assertThat(stateDirectory).isFile();
+  }
+
+  private static PullRequestFacade publishWithState(GHPullRequest pr, File stateDirectory, File projectBaseDir, Map<String, String> patches) throws IOException {
+    PullRequestFacade facade = new PullRequestFacade(mock(GitHubPluginConfiguration.class));
+    facade.setGitBaseDir(projectBaseDir);
+    facade.setMyself("sonar");
+    facade.setPatches(patches);
+    facade.setPr(pr);
+    facade.loadPublishedCommentsState(stateDirectory, "SonarSource/sonar-github", 1);
+    return facade;
+  }
+
+  private static GHIssueComment issueComment(String login, String body) throws IOException {
+    GHIssueComment comment = mock(GHIssueComment.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS));
+    when(comment.getUser().getLogin()).thenReturn(login);
+    when(comment.getBody()).thenReturn(body);
+    return comment;
+  }
+
+  private static GHPullRequestReviewComment reviewComment(String login, String path, int position, String body) throws IOException {
+    GHPullRequestReviewComment comment = mock(GHPullRequestReviewComment.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS));
+    when(comment.getUser().getLogin()).thenReturn(login);
+    when(comment.getPath()).thenReturn(path);
+    when(comment.getPosition()).thenReturn(position);
+    when(comment.getBody()).thenReturn(body);
+    return comment;
+  }
+
+  @SafeVarargs
+  private static <T> PagedIterable<T> pagedIterable(T... elements) {
+    PagedIterable<T> iterable = mock(PagedIterable.class);
+    when(iterable.withPageSize(anyInt())).thenReturn(iterable);
+    when(iterable._iterator(anyInt())).thenAnswer(invocation -> {
+      Iterator<T> delegate = Arrays.asList(elements).iterator();
+      PagedIterator<T> iterator = mock(PagedIterator.class);
+      when(iterator.hasNext()).thenAnswer(i -> delegate.hasNext());
+      when(iterator.nextPage()).thenAnswer(i -> {
+        List<T> page = new ArrayList<>();
+        delegate.forEachRemaining(page::add);
+        return page;
+      });
+      return iterator;
+    });
+    return iterable;
+  }
 }
@@ -21,7 +21,9 @@ package org.sonar.plugins.github;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import javax.annotation.CheckForNull;
 import org.junit.Before;
 import org.junit.Test;
@@ -47,7 +49,10 @@ import static org.mockito.ArgumentCaptor.forClass;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.contains;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -57,13 +62,14 @@ public class PullRequestIssuePostJobTest {
   private PullRequestFacades pullRequestFacades;
   private PullRequestFacade pullRequestFacade;
   private PostJobContext context;
+  private MapSettings settings;
 
   @Before
   public void prepare() throws Exception {
     pullRequestFacades = mock(PullRequestFacades.class);
     pullRequestFacade = mock(PullRequestFacade.class);
     when(pullRequestFacades.getPullRequestFacades()).thenReturn(ImmutableMap.of(1, pullRequestFacade));
-    MapSettings settings = new MapSettings(new PropertyDefinitions(PropertyDefinition.builder(CoreProperties.SERVER_BASE_URL)
+    settings = new MapSettings(new PropertyDefinitions(PropertyDefinition.builder(CoreProperties.SERVER_BASE_URL)
       .name("Server base URL")
       .description("HTTP URL of this SonarQube server, such as <i>http://yourhost.yourdomain/sonar</i>. This value is used i.e. to create links in emails.")
       .category(CoreProperties.CATEGORY_GENERAL)
@@ -243,4 +249,82 @@ public class PullRequestIssuePostJobTest {
     String msg = "SonarQube analysis failed: " + innerMsg;
     verify(pullRequestFacade).createOrUpdateSonarQubeStatus(GHCommitState.ERROR, msg, false);
   }
+
+  @Test
+  public void should_isolate_failures_when_publishing_several_pull_requests() {
+    PullRequestFacade failingFacade = mock(PullRequestFacade.class);
+    doThrow(new IllegalStateException("Boom")).when(failingFacade).publishReviewComments();
+    when(pullRequestFacades.getPullRequestFacades()).thenReturn(ImmutableMap.of(1, failingFacade, 2, pullRequestFacade));
+    when(context.issues()).thenReturn(Arrays.<PostJobIssue>asList());
+
+    pullRequestIssuePostJob.execute(context);
+
+    verify(failingFacade).createOrUpdateSonarQubeStatus(GHCommitState.ERROR, "SonarQube analysis failed: Boom", false);
+    verify(pullRequestFacade).createOrUpdateGlobalComments(null);
+    verify(pullRequestFacade).createOrUpdateSonarQubeStatus(GHCommitState.SUCCESS, "SonarQube reported no issues", false);
+  }
+
+  @Test
+  public void should_load_issues_once_for_several_pull_requests() {
+    DefaultInputFile inputFile1 = new TestInputFileBuilder("foo", "src/Foo.php").build();
+    PostJobIssue newIssue = newMockedIssue("foo:src/Foo.php", inputFile1, 1, Severity.BLOCKER, true, "msg1");
+    PullRequestFacade otherFacade = mock(PullRequestFacade.class);
+    when(pullRequestFacades.getPullRequestFacades()).thenReturn(ImmutableMap.of(1, pullRequestFacade, 2, otherFacade));
+    when(pullRequestFacade.hasFile(inputFile1)).thenReturn(true);
+    when(otherFacade.hasFile(inputFile1)).thenReturn(false);
+    when(context.issues()).thenReturn(Arrays.<PostJobIssue>asList(newIssue));
+
+    pullRequestIssuePostJob.execute(context);
+
+    verify(context, times(1)).issues();
+    verify(pullRequestFacade).createOrUpdateSonarQubeStatus(GHCommitState.ERROR, "SonarQube reported 1 issue, with 1 blocker", true);
+    verify(otherFacade).createOrUpdateSonarQubeStatus(GHCommitState.SUCCESS, "SonarQube reported no issues", false);
+  }
+
+  @Test
+  public void should_publish_same_comments_when_processing_issues_in_parallel() throws MalformedURLException {
+    List<PostJobIssue> issues = new ArrayList<>();
+    List<DefaultInputFile> files = new ArrayList<>();
+    for (int f = 0; f < 20; f++) {
+      files.add(new TestInputFileBuilder("foo", "src/Foo" + f + ".php").build());
+    }
+    Severity[] severities = Severity.values();
+    for (int i = 0; i < 500; i++) {
+      DefaultInputFile inputFile = files.get(i % files.size());
+      issues.add(newMockedIssue("foo:" + inputFile.relativePath(), inputFile, i % 7, severities[i % severities.length], i % 11 != 0, "msg" + i));
+    }
+    when(context.issues()).thenReturn(issues);
+
+    List<String> sequential = publishAndCaptureComments();
+    settings.setProperty(GitHubPlugin.GITHUB_PARALLEL_ISSUE_PROCESSING, "true");
+    List<String> parallel = publishAndCaptureComments();
+
+    assertThat(parallel).isEqualTo(sequential);
+    assertThat(sequential).hasSize(2 * 20 + 1);
+  }
+
+  private List<String> publishAndCaptureComments() throws MalformedURLException {
+    PullRequestFacade facade = mock(PullRequestFacade.class);
+    when(pullRequestFacades.getPullRequestFacades()).thenReturn(ImmutableMap.of(1, facade));
+    when(facade.hasFile(any(InputFile.class))).thenReturn(true);
+    // Lines 0 to 3 are in the diff, the other issues go to the global comment
+    when(facade.hasFileLine(any(InputFile.class), anyInt())).thenAnswer(invocation -> (Integer) invocation.getArguments()[1] < 4 && (Integer) invocation.getArguments()[1] % 2 == 0);
+    when(facade.getGithubUrl(any(InputFile.class), anyInt())).thenReturn(new URL("http://github/blob/abc123/src/Foo.php"));
+
+    pullRequestIssuePostJob.execute(context);
+
+    ArgumentCaptor<InputFile> fileCaptor = forClass(InputFile.class);
+    ArgumentCaptor<Integer> lineCaptor = forClass(Integer.class);
+    ArgumentCaptor<String> bodyCaptor = forClass(String.class);
+    verify(facade, atLeastOnce()).createOrUpdateReviewComment(fileCaptor.capture(), lineCaptor.capture(), bodyCaptor.capture());
+    List<String> comments = new ArrayList<>();
+    for (int i = 0; i < bodyCaptor.getAllValues().size(); i++) {
+      comments.add(fileCaptor.getAllValues().get(i) + ":" + lineCaptor.getAllValues().get(i) + ":" + bodyCaptor.getAllValues().get(i));
+    }
+    comments.sort(null);
+    ArgumentCaptor<String> globalCaptor = forClass(String.class);
+    verify(facade).createOrUpdateGlobalComments(globalCaptor.capture());
+    comments.add(globalCaptor.getValue());
+    return comments;
+  }
 }
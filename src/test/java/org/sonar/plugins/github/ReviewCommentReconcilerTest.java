@@ -0,0 +1,77 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+import org.junit.Test;
+import org.sonar.plugins.github.ReviewCommentReconciler.Action;
+import org.sonar.plugins.github.ReviewCommentReconciler.Location;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReviewCommentReconcilerTest {
+
+  @Test
+  public void should_keep_identical_comments() {
+    ReviewCommentReconciler reconciler = new ReviewCommentReconciler();
+    reconciler.want("src/Foo.java", 3, "body");
+
+    assertThat(reconciler.reconcile("src/Foo.java", 3, ReviewCommentReconciler.hash("body"))).isEqualTo(Action.KEEP);
+    assertThat(reconciler.toCreate()).isEmpty();
+  }
+
+  @Test
+  public void should_update_comments_with_another_body() {
+    ReviewCommentReconciler reconciler = new ReviewCommentReconciler();
+    reconciler.want("src/Foo.java", 3, "new body");
+
+    assertThat(reconciler.reconcile("src/Foo.java", 3, ReviewCommentReconciler.hash("old body"))).isEqualTo(Action.UPDATE);
+    assertThat(reconciler.wantedBody("src/Foo.java", 3)).isEqualTo("new body");
+    assertThat(reconciler.toCreate()).isEmpty();
+  }
+
+  @Test
+  public void should_delete_unwanted_and_duplicate_comments() {
+    ReviewCommentReconciler reconciler = new ReviewCommentReconciler();
+    reconciler.want("src/Foo.java", 3, "body");
+
+    assertThat(reconciler.reconcile("src/Foo.java", 4, ReviewCommentReconciler.hash("body"))).isEqualTo(Action.DELETE);
+    assertThat(reconciler.reconcile("src/Bar.java", 3, ReviewCommentReconciler.hash("body"))).isEqualTo(Action.DELETE);
+    assertThat(reconciler.reconcile("src/Foo.java", 3, ReviewCommentReconciler.hash("body"))).isEqualTo(Action.KEEP);
+    assertThat(reconciler.reconcile("src/Foo.java", 3, ReviewCommentReconciler.hash("body"))).isEqualTo(Action.DELETE);
+  }
+
+  @Test
+  public void should_create_missing_comments_ordered_by_location() {
+    ReviewCommentReconciler reconciler = new ReviewCommentReconciler();
+    reconciler.want("src/Foo.java", 12, "c");
+    reconciler.want("src/Foo.java", 3, "b");
+    reconciler.want("src/Bar.java", 7, "a");
+    reconciler.want("src/Baz.java", 1, "d");
+    reconciler.reconcile("src/Baz.java", 1, ReviewCommentReconciler.hash("other"));
+
+    assertThat(reconciler.toCreate()).containsExactly(new Location("src/Bar.java", 7), new Location("src/Foo.java", 3), new Location("src/Foo.java", 12));
+  }
+
+  @Test
+  public void should_hash_body_with_sha256() {
+    assertThat(ReviewCommentReconciler.hash("")).isEqualTo("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855");
+    assertThat(ReviewCommentReconciler.hash("a")).isNotEqualTo(ReviewCommentReconciler.hash("b"));
+  }
+}
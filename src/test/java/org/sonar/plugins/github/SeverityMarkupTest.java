@@ -0,0 +1,47 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+import org.junit.Test;
+import org.sonar.api.batch.rule.Severity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SeverityMarkupTest {
+
+  @Test
+  public void should_render_severity_fragments() {
+    SeverityMarkup markup = SeverityMarkup.of(Severity.CRITICAL);
+
+    assertThat(markup.lowerCaseName()).isEqualTo("critical");
+    assertThat(markup.imageUrl()).isEqualTo("https://sonarsource.github.io/sonar-github/severity-critical.png");
+    assertThat(markup.imageLink()).isEqualTo("![CRITICAL](https://sonarsource.github.io/sonar-github/severity-critical.png 'Severity: CRITICAL')");
+    assertThat(markup.imageLinkReference()).isEqualTo("![CRITICAL][CRITICAL]");
+    assertThat(markup.imageLinkDefinition()).isEqualTo("[CRITICAL]: https://sonarsource.github.io/sonar-github/severity-critical.png 'Severity: CRITICAL'");
+  }
+
+  @Test
+  public void should_share_fragments_of_each_severity() {
+    for (Severity severity : Severity.values()) {
+      assertThat(SeverityMarkup.of(severity)).isSameAs(SeverityMarkup.of(severity));
+      assertThat(SeverityMarkup.of(severity).imageLinkReference()).isEqualTo("![" + severity.name() + "][" + severity.name() + "]");
+    }
+  }
+}
@@ -19,8 +19,11 @@
  */
 package org.sonar.plugins.github;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.function.Consumer;
 import org.junit.Test;
 import org.sonar.api.batch.postjob.issue.PostJobIssue;
 import org.sonar.api.batch.rule.Severity;
@@ -30,28 +33,33 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
-public class MarkDownReportBuilderTest {
+public class StreamingMarkDownReportBuilderTest {
+
+  private static String stream(Consumer<ReportBuilder> report) {
+    StringBuilder out = new StringBuilder();
+    StreamingMarkDownReportBuilder builder = new StreamingMarkDownReportBuilder(mock(MarkDownUtils.class), out);
+    report.accept(builder);
+    builder.finish();
+    return out.toString();
+  }
 
   @Test
   public void test_empty_report() {
-    ReportBuilder builder = new MarkDownReportBuilder(mock(MarkDownUtils.class));
-    assertThat(builder.toString()).isEmpty();
+    assertThat(stream(b -> {
+    })).isEmpty();
   }
 
   @Test
   public void should_append_nothing_if_no_references() {
-    ReportBuilder builder = new MarkDownReportBuilder(mock(MarkDownUtils.class));
-    String someText = "some text";
-    builder.append(someText);
-    assertThat(builder.toString()).isEqualTo(someText);
+    assertThat(stream(b -> b.append("some text"))).isEqualTo("some text");
   }
 
   @Test
   public void should_append_severity_using_reference_links() {
-    ReportBuilder builder = new MarkDownReportBuilder(mock(MarkDownUtils.class));
-    builder.append(Severity.BLOCKER).append(" fix the leak!\n");
-    builder.append("Check comments too!\n");
-    assertThat(builder.toString()).isEqualTo("![BLOCKER][BLOCKER] fix the leak!\n"
+    assertThat(stream(b -> {
+      b.append(Severity.BLOCKER).append(" fix the leak!\n");
+      b.append("Check comments too!\n");
+    })).isEqualTo("![BLOCKER][BLOCKER] fix the leak!\n"
       + "Check comments too!\n"
       + "\n"
       + "[BLOCKER]: https://sonarsource.github.io/sonar-github/severity-blocker.png 'Severity: BLOCKER'");
@@ -59,11 +67,11 @@ public class MarkDownReportBuilderTest {
 
   @Test
   public void should_append_reference_definition_only_once() {
-    ReportBuilder builder = new MarkDownReportBuilder(mock(MarkDownUtils.class));
-    builder.append(Severity.BLOCKER).append(" fix the leak!\n");
-    builder.append(Severity.BLOCKER).append(" fix the leak!\n");
-    builder.append("Check comments too!\n");
-    assertThat(builder.toString()).isEqualTo("![BLOCKER][BLOCKER] fix the leak!\n"
+    assertThat(stream(b -> {
+      b.append(Severity.BLOCKER).append(" fix the leak!\n");
+      b.append(Severity.BLOCKER).append(" fix the leak!\n");
+      b.append("Check comments too!\n");
+    })).isEqualTo("![BLOCKER][BLOCKER] fix the leak!\n"
       + "![BLOCKER][BLOCKER] fix the leak!\n"
       + "Check comments too!\n"
       + "\n"
@@ -71,12 +79,12 @@ public class MarkDownReportBuilderTest {
   }
 
   @Test
-  public void should_append_reference_definition_for_all_known_severity() {
-    ReportBuilder builder = new MarkDownReportBuilder(mock(MarkDownUtils.class));
-    for (Severity severity : Severity.values()) {
-      builder.append(severity).append(" a ").append(severity.name()).append("-level issue\n");
-    }
-    assertThat(builder.toString()).isEqualTo("![INFO][INFO] a INFO-level issue\n"
+  public void should_append_reference_definition_for_all_known_severity_in_name_order() {
+    assertThat(stream(b -> {
+      for (Severity severity : Severity.values()) {
+        b.append(severity).append(" a ").append(severity.name()).append("-level issue\n");
+      }
+    })).isEqualTo("![INFO][INFO] a INFO-level issue\n"
       + "![MINOR][MINOR] a MINOR-level issue\n"
       + "![MAJOR][MAJOR] a MAJOR-level issue\n"
       + "![CRITICAL][CRITICAL] a CRITICAL-level issue\n"
@@ -91,17 +99,17 @@ public class MarkDownReportBuilderTest {
 
   @Test
   public void should_append_reference_definitions_for_extra_issues_too() throws MalformedURLException {
-    ReportBuilder builder = new MarkDownReportBuilder(mock(MarkDownUtils.class));
-    builder.append(Severity.BLOCKER).append(" fix the leak!\n");
-
     PostJobIssue postJobIssue = mock(PostJobIssue.class);
     when(postJobIssue.severity()).thenReturn(Severity.INFO);
     when(postJobIssue.ruleKey()).thenReturn(mock(RuleKey.class));
-    builder.registerExtraIssue(postJobIssue, new URL("http://github.com/dummy"));
-    builder.appendExtraIssues();
+    URL url = new URL("http://github.com/dummy");
 
-    builder.append("\nCheck comments too!\n");
-    assertThat(builder.toString()).isEqualTo("![BLOCKER][BLOCKER] fix the leak!\n"
+    assertThat(stream(b -> {
+      b.append(Severity.BLOCKER).append(" fix the leak!\n");
+      b.registerExtraIssue(postJobIssue, url);
+      b.appendExtraIssues();
+      b.append("\nCheck comments too!\n");
+    })).isEqualTo("![BLOCKER][BLOCKER] fix the leak!\n"
       + "\n"
       + "1. ![INFO][INFO] null\n"
       + "\n"
@@ -113,18 +121,42 @@ public class MarkDownReportBuilderTest {
 
   @Test
   public void should_append_reference_definitions_for_extra_issues_only_if_used() throws MalformedURLException {
-    ReportBuilder builder = new MarkDownReportBuilder(mock(MarkDownUtils.class));
-    builder.append(Severity.BLOCKER).append(" fix the leak!\n");
-
     PostJobIssue postJobIssue = mock(PostJobIssue.class);
     when(postJobIssue.severity()).thenReturn(Severity.INFO);
     when(postJobIssue.ruleKey()).thenReturn(mock(RuleKey.class));
-    builder.registerExtraIssue(postJobIssue, new URL("http://github.com/dummy"));
+    URL url = new URL("http://github.com/dummy");
 
-    builder.append("Check comments too!\n");
-    assertThat(builder.toString()).isEqualTo("![BLOCKER][BLOCKER] fix the leak!\n"
+    assertThat(stream(b -> {
+      b.append(Severity.BLOCKER).append(" fix the leak!\n");
+      b.registerExtraIssue(postJobIssue, url);
+      b.append("Check comments too!\n");
+    })).isEqualTo("![BLOCKER][BLOCKER] fix the leak!\n"
       + "Check comments too!\n"
       + "\n"
       + "[BLOCKER]: https://sonarsource.github.io/sonar-github/severity-blocker.png 'Severity: BLOCKER'");
   }
+
+  @Test
+  public void should_write_to_writer() {
+    StringBuilder written = new StringBuilder();
+    Writer writer = new Writer() {
+      @Override
+      public void write(char[] cbuf, int off, int len) {
+        written.append(cbuf, off, len);
+      }
+
+      @Override
+      public void flush() {
+      }
+
+      @Override
+      public void close() throws IOException {
+      }
+    };
+    StreamingMarkDownReportBuilder builder = new StreamingMarkDownReportBuilder(mock(MarkDownUtils.class), writer);
+    builder.append("Issues: ").append(Severity.INFO);
+    builder.finish();
+
+    assertThat(written.toString()).isEqualTo("Issues: ![INFO][INFO]\n[INFO]: https://sonarsource.github.io/sonar-github/severity-info.png 'Severity: INFO'");
+  }
 }
@@ -0,0 +1,143 @@
+/*
+ * SonarQube :: GitHub Plugin
+ * Copyright (C) 2015-2018 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.github;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.assertj.core.data.MapEntry;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UnifiedDiffParserTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private static final String[] PATCHES = {
+    "@@ -17,9 +17,6 @@\n  * along with this program\n-/**\n- * Deprecated\n- */\n @ParametersAreNonnullByDefault\n package org.sonar;\n ",
+    "@@ -24,9 +24,9 @@\n /**\n- * <p/>\n+ * <p>Implementation</p>\n  *\n",
+    "@@ -1 +0,0 @@\n-<fake/>\n\\ No newline at end of file",
+    "@@ -1,2 +1,3 @@ class Foo {\r\n a\r\n+b\r\n c\r\n@@ -10,1 +11,2 @@\r\n d\r\n+e",
+    "@@ -1 +1 @@\r-a\r+b\r",
+    "@@\t-1\u00a0+5,2\u3000@@\n+a\n\n+b\n",
+    "+orphan line before any hunk\n@@ -3 +4 @@\n same",
+    "",
+  };
+
+  private static Map<Integer, Integer> parse(String patch, boolean ignoreUnchangedLines) {
+    Map<Integer, Integer> result = new LinkedHashMap<>();
+    UnifiedDiffParser.parse(patch, ignoreUnchangedLines, result::put);
+    return result;
+  }
+
+  /**
+   * Previous regex based implementation, used as reference.
+   */
+  private static Map<Integer, Integer> parseWithRegex(String patch, boolean ignoreUnchangedLines) throws IOException {
+    Map<Integer, Integer> result = new LinkedHashMap<>();
+    int currentLine = -1;
+    int patchLocation = 0;
+    BufferedReader reader = new BufferedReader(new StringReader(patch));
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.startsWith("@")) {
+        Matcher matcher = Pattern.compile("@@\\p{IsWhite_Space}-[0-9]+(?:,[0-9]+)?\\p{IsWhite_Space}\\+([0-9]+)(?:,[0-9]+)?\\p{IsWhite_Space}@@.*").matcher(line);
+        if (!matcher.matches()) {
+          throw new IllegalStateException("Unable to parse patch line " + line);
+        }
+        currentLine = Integer.parseInt(matcher.group(1));
+      } else if (line.startsWith("+") || line.startsWith(" ")) {
+        if (line.startsWith("+") || !ignoreUnchangedLines) {
+          result.put(currentLine, patchLocation);
+        }
+        currentLine++;
+      }
+      patchLocation++;
+    }
+    return result;
+  }
+
+  @Test
+  public void should_behave_like_regex_implementation() throws IOException {
+    for (String patch : PATCHES) {
+      assertThat(parse(patch, false)).as(patch).isEqualTo(parseWithRegex(patch, false));
+      assertThat(parse(patch, true)).as(patch).isEqualTo(parseWithRegex(patch, true));
+    }
+  }
+
+  @Test
+  public void should_support_all_line_terminators() {
+    assertThat(parse("@@ -1,2 +1,3 @@\r\n a\r\n+b\r\n c", false)).containsOnly(MapEntry.entry(1, 1), MapEntry.entry(2, 2), MapEntry.entry(3, 3));
+    assertThat(parse("@@ -1,2 +1,3 @@\r a\r+b\r c", false)).containsOnly(MapEntry.entry(1, 1), MapEntry.entry(2, 2), MapEntry.entry(3, 3));
+  }
+
+  @Test
+  public void should_count_empty_lines_as_positions() {
+    assertThat(parse("@@ -1 +7 @@\n\n+b", true)).containsOnly(MapEntry.entry(7, 2));
+  }
+
+  @Test
+  public void should_report_missing_new_range() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Unable to parse patch line @@ -1,2 @@ (expected '+' at column 9)");
+
+    parse("@@ -1,2 @@\n+a", false);
+  }
+
+  @Test
+  public void should_report_invalid_line_number() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Unable to parse patch line @@ -1 +x @@ (expected a number at column 8)");
+
+    parse("@@ -1 +1 @@\n+a\n@@ -1 +x @@\n+b", false);
+  }
+
+  @Test
+  public void should_report_missing_white_space() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Unable to parse patch line @@ -1 +1@@ (expected a white space at column 9)");
+
+    parse("@@ -1 +1@@", false);
+  }
+
+  @Test
+  public void should_report_too_large_line_number() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("(line number is too large at column 8)");
+
+    parse("@@ -1 +99999999999 @@", false);
+  }
+
+  @Test
+  public void should_include_full_patch_in_error() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("\nFull patch: \n@ foo\n+a");
+
+    parse("@ foo\n+a", false);
+  }
+}